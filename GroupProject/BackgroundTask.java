@@ -0,0 +1,92 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import javax.swing.SwingWorker;
+
+// A roster-wide GUI job (save, load, import, building the roster table).
+// The work runs on a background thread; only the finished result - or the
+// error - comes back to the event thread.
+//
+// The work reports how far it got with update(), which drives the progress
+// bar, and calls checkCancelled() at points where stopping is safe. Once it
+// starts changing something that can't be stopped half way (e.g. applying
+// loaded students), it calls commit() and Cancel is switched off.
+class BackgroundTask<T> extends SwingWorker<T, Void> {
+
+    interface Work<T> {
+        T run(BackgroundTask<?> task) throws Exception;
+    }
+
+    final String description;
+    private final Work<T> work;
+    private final Consumer<T> onSuccess;
+    private final Consumer<Exception> onError;
+    private final Runnable onCancel;
+    private boolean cancellable = true; // guarded by this
+
+    BackgroundTask(String description, Work<T> work, Consumer<T> onSuccess,
+                   Consumer<Exception> onError, Runnable onCancel) {
+        this.description = description;
+        this.work = work;
+        this.onSuccess = onSuccess;
+        this.onError = onError;
+        this.onCancel = onCancel;
+    }
+
+    // Any thread. Progress is shown in whole percent, so most calls are free.
+    void update(long done, long total) {
+        if (total > 0) {
+            setProgress((int) Math.min(100, done * 100 / total));
+        }
+    }
+
+    // Throws if Cancel was pressed; call only where stopping leaves no mess
+    void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    // From here on the job runs to the end. Throws if Cancel came first.
+    synchronized void commit() {
+        checkCancelled();
+        cancellable = false;
+        firePropertyChange("cancellable", true, false);
+    }
+
+    synchronized boolean isCancellable() {
+        return cancellable && !isDone();
+    }
+
+    // What the Cancel button calls; false if the job is past commit()
+    synchronized boolean requestCancel() {
+        return cancellable && cancel(false);
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        return work.run(this);
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            onCancel.run();
+            return;
+        }
+        try {
+            onSuccess.accept(get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CancellationException) {
+                onCancel.run();
+            } else if (cause instanceof Exception) {
+                onError.accept((Exception) cause);
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+import java.util.List;
+
+// What the Class Statistics report reads (see RosterAnalytics.text): the
+// live RosterAnalytics of this process, or a RosterAnalytics.Summary merged
+// from the shards of a sharded roster (see ShardRouter)
+interface ClassStatistics {
+
+    // Courses with at least one graded student, by name
+    List<String> courses();
+
+    // Null if nobody has a grade in the course
+    RosterAnalytics.CourseReport report(String course);
+
+    // Best first, at most n
+    List<RosterAnalytics.Ranked> top(String course, int n);
+
+    List<RosterAnalytics.Ranked> topOverall(int n);
+
+    List<RosterAnalytics.Ranked> topGpa(int n);
+}
@@ -0,0 +1,97 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+// A student's average and letter in one course, as the students.txt export
+// (RosterExporter) and the console table (RosterTable) print them: the
+// digits of %.2f (HALF_UP) as ASCII, then the letter on the course's
+// GradingScale. An unweighted average comes straight from the running sum
+// in exact integer math; grading scales are looked up once per course.
+//
+// One per writer: of() reuses the same buffer every time.
+final class CourseAverage {
+
+    private GradingScale[] scales = new GradingScale[16]; // by course ID
+    private final byte[] text = new byte[32];
+    private int length;
+    private String letter;
+
+    // Works out course `slot` of the student. Caller holds the student's
+    // lock, so the average and letter come from the same grades.
+    void of(Student s, int slot) {
+        GradeList grades = s.gradesAt(slot);
+        String course = s.courseName(slot);
+        GradingScale scale = scale(s, slot);
+        length = 0;
+        if (grades.hasCategories() && CourseRules.isWeighted(course)) {
+            // Weighted average isn't sum/count: the rare slow path
+            double average = CourseRules.average(course, grades);
+            String digits = BigDecimal.valueOf(average).setScale(2, RoundingMode.HALF_UP).toPlainString();
+            for (int i = 0; i < digits.length(); i++) text[length++] = (byte) digits.charAt(i);
+            letter = scale.letter(average);
+        } else {
+            putAverage(grades.sum(), grades.size());
+            letter = scale.letter(grades.sum(), grades.size());
+        }
+    }
+
+    // The average's ASCII digits are text()[0 .. length())
+    byte[] text() {
+        return text;
+    }
+
+    int length() {
+        return length;
+    }
+
+    String letter() {
+        return letter;
+    }
+
+    // Same digits as %.2f of sum/count (HALF_UP), but in exact integer math
+    private void putAverage(long sum, int count) {
+        if (count == 0) {
+            put('0');
+            put('.');
+            put('0');
+            put('0');
+            return;
+        }
+        boolean negative = sum < 0;
+        long hundredths = (Math.abs(sum) * 200 + count) / (2L * count);
+        if (negative && hundredths != 0) put('-');
+        putLong(hundredths / 100);
+        put('.');
+        long cents = hundredths % 100;
+        put((char) ('0' + cents / 10));
+        put((char) ('0' + cents % 10));
+    }
+
+    private void putLong(long value) {
+        int start = length;
+        do {
+            put((char) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte swap = text[i];
+            text[i] = text[j];
+            text[j] = swap;
+        }
+    }
+
+    private void put(char c) {
+        text[length++] = (byte) c;
+    }
+
+    private GradingScale scale(Student s, int slot) {
+        int id = s.courseId(slot);
+        if (id >= scales.length) {
+            scales = Arrays.copyOf(scales, Math.max(id + 1, scales.length * 2));
+        }
+        if (scales[id] == null) {
+            scales[id] = GradingScale.forCourse(s.courseName(slot));
+        }
+        return scales[id];
+    }
+}
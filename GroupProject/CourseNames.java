@@ -0,0 +1,47 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Interns course names into small int IDs shared by every student, so the
+// same "Computer Science" string isn't stored once per student.
+// Lookups don't lock; registering a new course does.
+final class CourseNames {
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int count; // guarded by CourseNames.class
+
+    private CourseNames() {
+    }
+
+    // ID for the course, registering it the first time it's seen
+    static int intern(String course) {
+        Integer id = ids.get(course);
+        if (id != null) return id;
+        synchronized (CourseNames.class) {
+            id = ids.get(course);
+            if (id == null) {
+                id = count;
+                String[] current = names;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[id] = course;
+                names = current; // publish the name before the ID can be seen
+                count++;
+                ids.put(course, id);
+            }
+            return id;
+        }
+    }
+
+    // ID for the course, or -1 if nobody has ever taken it
+    static int find(String course) {
+        Integer id = ids.get(course);
+        return id == null ? -1 : id;
+    }
+
+    static String name(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Per-course weighting and credit hours, and the grade points behind a GPA.
+// Set from grading.properties (see GradingScale.load):
+//
+//   course.Math.weights=homework:30,exam:50,project:20
+//   course.Math.credits=4
+//   points=A:4,B:3,C:2,D:1,F:0
+//
+// A weighted course average is the weighted mean of its category averages,
+// over the weighted categories that have grades; grades in other
+// categories don't count. If none of them has grades yet - and for any
+// course without weights - it's the plain mean of every grade, as before.
+// Everything is computed from GradeList's running per-category sums, never
+// by walking the grades.
+//
+// GPA = sum(course credits x points for the course's letter) / credits,
+// over courses with grades whose letter has points (so a pass/fail scale
+// without points stays out of it). Courses have DEFAULT_CREDITS unless
+// configured.
+final class CourseRules {
+
+    static final double DEFAULT_CREDITS = 1.0;
+    static final String DEFAULT_POINTS = "A:4,B:3,C:2,D:1,F:0";
+
+    // course name -> weight by category ID (0 = not counted)
+    private static volatile Map<String, double[]> weights = Collections.emptyMap();
+    private static volatile Map<String, Double> credits = Collections.emptyMap();
+    private static volatile Map<String, Double> points = parsePoints(DEFAULT_POINTS);
+    private static volatile long generation; // bumped by configure()
+
+    private CourseRules() {
+    }
+
+    // ===== AVERAGES =====
+
+    // The course average shown everywhere; 0 for a course without grades
+    static double average(String course, GradeList grades) {
+        return grades.isEmpty() ? 0.0 : averageAdjusted(course, grades, GradeCategories.NONE, 0, 0);
+    }
+
+    // The average as it would be with `sumDelta`/`countDelta` applied to one
+    // category - used to work out what an average was just before a change.
+    // NaN if that leaves the course without grades.
+    static double averageAdjusted(String course, GradeList grades, int category, long sumDelta, int countDelta) {
+        double[] w = weights.get(course);
+        if (w != null && grades.hasCategories()) {
+            double weighted = 0;
+            double total = 0;
+            for (int c = 0; c < w.length; c++) {
+                if (w[c] <= 0) continue;
+                int count = grades.categoryCount(c) + (c == category ? countDelta : 0);
+                if (count == 0) continue;
+                long sum = grades.categorySum(c) + (c == category ? sumDelta : 0);
+                weighted += w[c] * (sum / (double) count);
+                total += w[c];
+            }
+            if (total > 0) return weighted / total;
+        }
+        int count = grades.size() + countDelta;
+        return count == 0 ? Double.NaN : (grades.sum() + sumDelta) / (double) count;
+    }
+
+    // True if the course's average can differ from sum / count
+    static boolean isWeighted(String course) {
+        return weights.containsKey(course);
+    }
+
+    // ===== CREDITS AND GPA =====
+
+    static double credits(String course) {
+        return credits.getOrDefault(course, DEFAULT_CREDITS);
+    }
+
+    // Grade points for a letter, or NaN if the letter doesn't count
+    static double points(String letter) {
+        Double p = points.get(letter);
+        return p == null ? Double.NaN : p;
+    }
+
+    // NaN if no course counts yet. Caller holds the student's lock.
+    static double gpa(Student s) {
+        double weighted = 0;
+        double hours = 0;
+        for (int c = 0; c < s.courseCount(); c++) {
+            double p = coursePoints(s, c);
+            if (Double.isNaN(p)) continue;
+            double h = credits(s.courseName(c));
+            weighted += p * h;
+            hours += h;
+        }
+        return hours == 0 ? Double.NaN : weighted / hours;
+    }
+
+    // Credit hours that count towards the GPA. Caller holds the student's lock.
+    static double gpaHours(Student s) {
+        double hours = 0;
+        for (int c = 0; c < s.courseCount(); c++) {
+            if (!Double.isNaN(coursePoints(s, c))) hours += credits(s.courseName(c));
+        }
+        return hours;
+    }
+
+    private static double coursePoints(Student s, int slot) {
+        GradeList grades = s.gradesAt(slot);
+        if (grades.isEmpty()) return Double.NaN;
+        String course = s.courseName(slot);
+        return points(GradingScale.forCourse(course).letter(average(course, grades)));
+    }
+
+    // ===== CONFIG =====
+
+    // Specs as found in grading.properties; throws IllegalArgumentException
+    // on a malformed one. Replaces whatever was configured before.
+    static synchronized void configure(Map<String, String> weightSpecs, Map<String, String> creditSpecs, String pointsSpec) {
+        Map<String, double[]> newWeights = new HashMap<>();
+        for (Map.Entry<String, String> e : weightSpecs.entrySet()) {
+            newWeights.put(e.getKey(), parseWeights(e.getKey(), e.getValue()));
+        }
+        Map<String, Double> newCredits = new HashMap<>();
+        for (Map.Entry<String, String> e : creditSpecs.entrySet()) {
+            double hours = number(e.getValue(), "credits for " + e.getKey());
+            if (hours < 0) {
+                throw new IllegalArgumentException("Credits for " + e.getKey() + " can't be negative");
+            }
+            newCredits.put(e.getKey(), hours);
+        }
+        Map<String, Double> newPoints = parsePoints(pointsSpec != null ? pointsSpec : DEFAULT_POINTS);
+
+        weights = newWeights;
+        credits = newCredits;
+        points = newPoints;
+        generation++;
+    }
+
+    // Changes whenever configure() does, so cached results (see
+    // RosterAnalytics) can tell they were worked out under other rules
+    static long generation() {
+        return generation;
+    }
+
+    // "homework:30,exam:50" -> weights indexed by category ID
+    private static double[] parseWeights(String course, String spec) {
+        Map<Integer, Double> byId = new HashMap<>();
+        int highest = 0;
+        for (String part : spec.split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Bad weight '" + part.trim() + "' for " + course
+                        + " (expected CATEGORY:WEIGHT)");
+            }
+            int id = GradeCategories.intern(part.substring(0, colon));
+            double weight = number(part.substring(colon + 1), "weight in " + course);
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights for " + course + " can't be negative");
+            }
+            byId.put(id, weight);
+            highest = Math.max(highest, id);
+        }
+        double[] w = new double[highest + 1];
+        byId.forEach((id, weight) -> w[id] = weight);
+        return w;
+    }
+
+    private static Map<String, Double> parsePoints(String spec) {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Bad grade points '" + part.trim()
+                        + "' (expected LETTER:POINTS)");
+            }
+            String letter = part.substring(0, colon).trim();
+            map.put(letter, number(part.substring(colon + 1), "points for " + letter));
+        }
+        return map;
+    }
+
+    private static double number(String text, String what) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + what + ": " + text.trim());
+        }
+    }
+}
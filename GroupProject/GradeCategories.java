@@ -0,0 +1,57 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Interns grade category names ("homework", "exam", ...) into small IDs,
+// the same way CourseNames does for courses. ID 0 is the empty name: a
+// grade entered without a category. IDs fit in a byte (see GradeList).
+final class GradeCategories {
+
+    static final int NONE = 0;
+    static final int MAX = 255;
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = {""};
+    private static int count = 1; // guarded by GradeCategories.class
+
+    static {
+        ids.put("", NONE);
+    }
+
+    private GradeCategories() {
+    }
+
+    // ID for the category, registering it the first time it's seen.
+    // Names are case-folded and trimmed so "Exam" and "exam " are one category.
+    static int intern(String category) {
+        String name = normalize(category);
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        synchronized (GradeCategories.class) {
+            id = ids.get(name);
+            if (id == null) {
+                if (count > MAX) {
+                    throw new IllegalArgumentException("Too many grade categories (max " + MAX + ")");
+                }
+                id = count;
+                String[] current = names;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[id] = name;
+                names = current; // publish the name before the ID can be seen
+                count++;
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    static String name(int id) {
+        return names[id];
+    }
+
+    private static String normalize(String category) {
+        return category == null ? "" : StudentRegistry.key(category.trim());
+    }
+}
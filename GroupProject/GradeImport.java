@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Bulk grade upload: takes (student, course, grade[, category]) rows,
+// checks each one the same way the Add Grade dialog does, groups the good
+// rows by student and applies the groups in parallel on a fork/join pool.
+// Grades for one student keep their input order.
+//
+// Nothing is shown to the user from here; problems come back in the
+// Report, one entry per bad row.
+class GradeImport {
+
+    static final class Row {
+        final long line;
+        final String student;
+        final String course;
+        final int grade;
+        final String category; // "" for none
+
+        Row(long line, String student, String course, int grade) {
+            this(line, student, course, grade, "");
+        }
+
+        Row(long line, String student, String course, int grade, String category) {
+            this.line = line;
+            this.student = student;
+            this.course = course;
+            this.grade = grade;
+            this.category = category == null ? "" : category;
+        }
+    }
+
+    // One rejected row
+    static final class Problem {
+        final long line;
+        final String message;
+
+        Problem(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    static final class Report {
+        int rows;
+        int applied;
+        final List<Problem> errors = new ArrayList<>(); // in line order
+
+        void error(long line, String problem) {
+            errors.add(new Problem(line, problem));
+        }
+    }
+
+    // Below this many students a group of rows is applied without splitting
+    private static final int GROUPS_PER_TASK = 64;
+
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
+    private final StudentRegistry registry;
+    private final Report report = new Report();
+    private final Map<Student, List<Row>> byStudent = new IdentityHashMap<>();
+
+    // Remember the last lookup: rows for one student usually come together
+    private String lastName;
+    private Student lastStudent;
+
+    private GradeImport(StudentRegistry registry) {
+        this.registry = registry;
+    }
+
+    static Report run(StudentRegistry registry, Iterable<Row> rows) {
+        GradeImport importer = new GradeImport(registry);
+        for (Row row : rows) {
+            importer.accept(row);
+        }
+        return importer.finish();
+    }
+
+    // Imports a name,course,grade[,category] CSV (see RosterLoader).
+    // Unreadable rows are reported like any other bad row instead of failing
+    // the whole file.
+    static Report runCsv(StudentRegistry registry, Path file) throws IOException {
+        RosterMetrics.BulkEvent event = new RosterMetrics.BulkEvent();
+        event.begin();
+        long start = RosterMetrics.start(RosterMetrics.Op.IMPORT);
+        GradeImport importer = new GradeImport(registry);
+        RosterLoader.readCsv(file, new RosterLoader.CsvRows() {
+            @Override
+            public void row(long lineNumber, String name, String course, int grade, String category) {
+                importer.accept(new Row(lineNumber, name, course, grade, category));
+            }
+
+            @Override
+            public void badRow(long lineNumber, String problem) {
+                importer.report.rows++;
+                importer.report.error(lineNumber, problem);
+            }
+        });
+        Report report = importer.finish();
+        RosterMetrics.record(RosterMetrics.Op.IMPORT, start);
+        if (event.shouldCommit()) {
+            event.operation = "import";
+            event.file = file.toString();
+            event.rows = report.rows;
+            event.commit();
+        }
+        return report;
+    }
+
+    private void accept(Row row) {
+        report.rows++;
+        if (row.student == null || row.student.trim().isEmpty()) {
+            report.error(row.line, "missing student name");
+            return;
+        }
+        if (row.course == null || row.course.trim().isEmpty()) {
+            report.error(row.line, "missing course name");
+            return;
+        }
+        if (row.grade < 0 || row.grade > 100) {
+            report.error(row.line, "grade must be between 0 and 100 (was " + row.grade + ")");
+            return;
+        }
+
+        Student student;
+        if (row.student.equals(lastName)) {
+            student = lastStudent;
+        } else {
+            student = registry.findByName(row.student.trim());
+            lastName = row.student;
+            lastStudent = student;
+        }
+        if (student == null) {
+            report.error(row.line, "student not found: " + row.student.trim());
+            return;
+        }
+        byStudent.computeIfAbsent(student, s -> new ArrayList<>()).add(row);
+    }
+
+    private Report finish() {
+        List<Map.Entry<Student, List<Row>>> groups = new ArrayList<>(byStudent.entrySet());
+        List<Problem> applyErrors = Collections.synchronizedList(new ArrayList<>());
+        int[] applied = new int[groups.size()];
+
+        pool.invoke(new ApplyGroups(groups, 0, groups.size(), applied, applyErrors));
+
+        for (int n : applied) report.applied += n;
+        report.errors.addAll(applyErrors);
+        report.errors.sort(Comparator.comparingLong(p -> p.line));
+        return report;
+    }
+
+    // Splits the student groups in half until they're small, then applies
+    // each student's rows in order. Different students never share a lock
+    // in StudentRegistry.addGrade, so the halves really run side by side -
+    // up to the listeners: RosterJournal and RosterHistory append one record
+    // per grade under their own lock, so that (short) step still goes one
+    // grade at a time.
+    private final class ApplyGroups extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map.Entry<Student, List<Row>>> groups;
+        private final int from;
+        private final int to;
+        private final int[] applied;
+        private final List<Problem> errors;
+
+        ApplyGroups(List<Map.Entry<Student, List<Row>>> groups, int from, int to,
+                    int[] applied, List<Problem> errors) {
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.applied = applied;
+            this.errors = errors;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GROUPS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ApplyGroups(groups, from, mid, applied, errors),
+                        new ApplyGroups(groups, mid, to, applied, errors));
+                return;
+            }
+            for (int g = from; g < to; g++) {
+                Student student = groups.get(g).getKey();
+                for (Row row : groups.get(g).getValue()) {
+                    try {
+                        registry.addGrade(student, row.course.trim(), row.grade, row.category);
+                        applied[g]++;
+                    } catch (RuntimeException e) {
+                        errors.add(new Problem(row.line, e.getMessage()));
+                    }
+                }
+            }
+        }
+    }
+}
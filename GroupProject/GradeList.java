@@ -0,0 +1,345 @@
+import java.util.Arrays;
+
+// Growable list of grades for one course. Grades are 0-100, so they're kept
+// one byte each; a file written before that was checked can still hold
+// others, so the first out-of-range grade switches this list over to an
+// int[].
+//
+// A running sum/min/max is kept next to the grades so averages and letter
+// grades cost O(1). add/insert/set/remove keep them up to date; min/max
+// are only rescanned when the grade that held the extreme is overwritten
+// or removed.
+//
+// Grades can carry a category (see GradeCategories). Lists that never get
+// one pay nothing for it; the first categorized grade adds a category byte
+// per grade plus a running sum/count per category, which is what weighted
+// averages (CourseRules) are computed from.
+//
+// With the memory-mapped store (see GradeStore) a list's grades and
+// categories live in a run of the store's file instead of the arrays here;
+// only the running totals stay on the heap. A list opened from the file
+// works its totals out on first use, so opening the store reads no grades.
+class GradeList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private byte[] small;
+    private int[] wide; // only set once a grade doesn't fit in a byte
+    private int size;
+
+    private byte[] categories;   // null while every grade is uncategorized (or mapped)
+    private long[] categorySums; // by category ID, null while every grade is uncategorized
+    private int[] categoryCounts;
+
+    private GradeStore.Run run;  // where the grades are when they're in a GradeStore
+    private boolean unscanned;   // totals not worked out yet (opened from a GradeStore)
+
+    private long sum;
+    private int min;
+    private int max;
+    private boolean extremesStale; // min/max need a rescan before use
+
+    GradeList() {
+        small = new byte[INITIAL_CAPACITY];
+    }
+
+    // A list whose grades are already in a GradeStore run
+    GradeList(GradeStore.Run run, int size) {
+        this.run = run;
+        this.size = size;
+        this.unscanned = size > 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int index) {
+        checkIndex(index);
+        if (run != null) return run.grade(index);
+        return wide != null ? wide[index] : small[index] & 0xFF;
+    }
+
+    void add(int grade) {
+        add(grade, GradeCategories.NONE);
+    }
+
+    void add(int grade, int category) {
+        insert(size, grade, category);
+    }
+
+    // Puts the grade at index, moving the grades from there on up one
+    void insert(int index, int grade, int category) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        int tail = size - index;
+        if (run != null) {
+            scan();
+            run.insert(index, size, grade, category);
+        } else {
+            ensureCapacity(size + 1);
+            if (wide == null && (grade < 0 || grade > 255)) {
+                widen();
+            }
+            if (wide != null) {
+                System.arraycopy(wide, index, wide, index + 1, tail);
+            } else {
+                System.arraycopy(small, index, small, index + 1, tail);
+            }
+            store(index, grade);
+        }
+        if (category != GradeCategories.NONE || categorySums != null) {
+            trackCategory(category);
+            if (categories != null) {
+                System.arraycopy(categories, index, categories, index + 1, tail);
+                categories[index] = (byte) category;
+            }
+            categorySums[category] += grade;
+            categoryCounts[category]++;
+        }
+        size++;
+
+        sum += grade;
+        if (size == 1) {
+            min = grade;
+            max = grade;
+            extremesStale = false;
+        } else if (!extremesStale) {
+            if (grade < min) min = grade;
+            if (grade > max) max = grade;
+        }
+    }
+
+    // Returns the grade that was replaced
+    int set(int index, int grade) {
+        int old = get(index);
+        scan();
+        if (run != null) {
+            run.set(index, grade);
+        } else {
+            store(index, grade);
+        }
+        if (categorySums != null) {
+            categorySums[category(index)] += grade - old;
+        }
+
+        sum += grade - old;
+        if (!extremesStale) {
+            if (old == min || old == max) {
+                extremesStale = true;
+            } else {
+                if (grade < min) min = grade;
+                if (grade > max) max = grade;
+            }
+        }
+        return old;
+    }
+
+    // Returns the grade that was removed
+    int remove(int index) {
+        int old = get(index);
+        scan();
+        if (categorySums != null) {
+            int category = category(index);
+            categorySums[category] -= old;
+            categoryCounts[category]--;
+        }
+        int tail = size - index - 1;
+        if (run != null) {
+            run.remove(index, size);
+        } else {
+            if (wide != null) {
+                System.arraycopy(wide, index + 1, wide, index, tail);
+            } else {
+                System.arraycopy(small, index + 1, small, index, tail);
+            }
+            if (categories != null) {
+                System.arraycopy(categories, index + 1, categories, index, tail);
+            }
+        }
+        size--;
+
+        sum -= old;
+        if (old == min || old == max) {
+            extremesStale = true;
+        }
+        return old;
+    }
+
+    long sum() {
+        scan();
+        return sum;
+    }
+
+    int category(int index) {
+        checkIndex(index);
+        if (run != null) return run.category(index);
+        return categories == null ? GradeCategories.NONE : categories[index] & 0xFF;
+    }
+
+    boolean hasCategories() {
+        scan();
+        return categorySums != null;
+    }
+
+    // Sum and count of the grades in one category
+    long categorySum(int category) {
+        scan();
+        if (categorySums == null) return category == GradeCategories.NONE ? sum : 0;
+        return category < categorySums.length ? categorySums[category] : 0;
+    }
+
+    int categoryCount(int category) {
+        scan();
+        if (categorySums == null) return category == GradeCategories.NONE ? size : 0;
+        return category < categoryCounts.length ? categoryCounts[category] : 0;
+    }
+
+    double average() {
+        scan();
+        return size == 0 ? 0.0 : sum / (double) size;
+    }
+
+    // Lowest grade; only meaningful when the list isn't empty
+    int min() {
+        scan();
+        refreshExtremes();
+        return min;
+    }
+
+    // Highest grade; only meaningful when the list isn't empty
+    int max() {
+        scan();
+        refreshExtremes();
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(get(i));
+        }
+        return sb.toString();
+    }
+
+    // ===== GRADE STORE =====
+
+    GradeStore.Run run() {
+        return run;
+    }
+
+    // The grades have been copied into `to` (see GradeStore); from now on
+    // they're read and written there
+    void moveTo(GradeStore.Run to) {
+        scan();
+        run = to;
+        small = null;
+        wide = null;
+        categories = null;
+    }
+
+    // Works out the totals of a list opened from a GradeStore, the first
+    // time they're needed
+    private void scan() {
+        if (!unscanned) return;
+        unscanned = false;
+        long total = 0;
+        int highestCategory = GradeCategories.NONE;
+        for (int i = 0; i < size; i++) {
+            total += run.grade(i);
+            highestCategory = Math.max(highestCategory, run.category(i));
+        }
+        sum = total;
+        extremesStale = true;
+        if (highestCategory != GradeCategories.NONE) {
+            categorySums = new long[highestCategory + 1];
+            categoryCounts = new int[highestCategory + 1];
+            for (int i = 0; i < size; i++) {
+                int category = run.category(i);
+                categorySums[category] += run.grade(i);
+                categoryCounts[category]++;
+            }
+        }
+    }
+
+    // ===== STORAGE HELPERS =====
+
+    private void refreshExtremes() {
+        if (!extremesStale) return;
+        if (size > 0) {
+            int lo = get(0);
+            int hi = lo;
+            for (int i = 1; i < size; i++) {
+                int g = get(i);
+                if (g < lo) lo = g;
+                if (g > hi) hi = g;
+            }
+            min = lo;
+            max = hi;
+        }
+        extremesStale = false;
+    }
+
+    // Makes room to count grades of this category, switching the list over
+    // to tracking categories if it wasn't yet (all earlier grades had none)
+    private void trackCategory(int category) {
+        if (categorySums == null) {
+            if (run == null) {
+                categories = new byte[wide != null ? wide.length : small.length];
+            }
+            categorySums = new long[category + 1];
+            categoryCounts = new int[category + 1];
+            categorySums[GradeCategories.NONE] = sum;
+            categoryCounts[GradeCategories.NONE] = size;
+        } else if (category >= categorySums.length) {
+            categorySums = Arrays.copyOf(categorySums, category + 1);
+            categoryCounts = Arrays.copyOf(categoryCounts, category + 1);
+        }
+    }
+
+    private void store(int index, int grade) {
+        if (wide == null && (grade < 0 || grade > 255)) {
+            widen();
+        }
+        if (wide != null) {
+            wide[index] = grade;
+        } else {
+            small[index] = (byte) grade;
+        }
+    }
+
+    private void widen() {
+        wide = new int[small.length];
+        for (int i = 0; i < size; i++) {
+            wide[i] = small[i] & 0xFF;
+        }
+        small = null;
+    }
+
+    private void ensureCapacity(int needed) {
+        int capacity = wide != null ? wide.length : small.length;
+        if (needed <= capacity) return;
+        int newCapacity = Math.max(needed, capacity + (capacity >> 1) + 1);
+        if (wide != null) {
+            wide = Arrays.copyOf(wide, newCapacity);
+        } else {
+            small = Arrays.copyOf(small, newCapacity);
+        }
+        if (categories != null) {
+            categories = Arrays.copyOf(categories, newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+}
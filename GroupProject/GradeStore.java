@@ -0,0 +1,776 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The roster kept in memory-mapped files (-Droster.store=mapped) instead of
+// students.roster and the journal, for rosters with more grades than the
+// heap comfortably holds. Grades stay off the heap: each course's grades
+// are a run in the grades file that its GradeList reads and writes in
+// place; only students, names and running totals are Java objects.
+//
+// A directory (students.grades/) of three files, each mapped 64 MiB at a
+// time (MappedByteBuffer; MemorySegment isn't final in Java 17):
+//  - directory: fixed-width 32-byte records, one per student, per course a
+//    student takes, and per course or category name
+//  - grades: the runs, GRADE_BYTES per grade (the grade, then its category)
+//  - names: student, course and category names, UTF-8
+// Runs and names come in power-of-two size classes, so a run that fills up
+// moves once to one twice as big and the old one is reused.
+//
+//   record: kind:i32  id:i32  run:i64  course:i32  unused:i32  order:i64
+//   run = offset (35 bits) | size class (5 bits) | length (24 bits)
+//
+// id is the student ID (students and courses) or the name's number
+// (course names and categories); course is a course record's course name
+// number; order says in what order a student's courses were added.
+//
+// Opening reads only the directory and the names: a list's grades are
+// paged in by the OS when it's first used (GradeList works out its totals
+// then), so a big roster opens without reading or parsing its grades.
+//
+// Every change ends with a single 8-byte write that makes it visible
+// (a record's kind or run), and a grade inserted or removed in the middle
+// is written to a fresh run before the record is switched over, so a
+// process that is killed at any point leaves the files consistent. What
+// reaches the disk is up to the OS until force(), which runs every second
+// and on close; a power cut can lose the last second of changes (the
+// journal's guarantee - every acknowledged change is on disk - doesn't
+// hold here).
+//
+// Runs of removed courses and students aren't reused until the next open,
+// since undo may still read them (see RosterHistory). The free lists live
+// only in memory: every open rebuilds them from the gaps between the runs
+// the directory still points at, so nothing freed is lost to a restart.
+final class GradeStore implements RosterListener, Closeable {
+
+    static final String DIRECTORY_FILE = "directory";
+    static final String GRADES_FILE = "grades";
+    static final String NAMES_FILE = "names";
+
+    static final int GRADE_BYTES = 5;               // grade (i32), category (u8)
+    static final int MAX_GRADES = 4 << 21;          // per course: the largest run that fits a chunk
+
+    private static final int MAGIC = 0x31535247;   // "GRS1"
+    private static final int VERSION = 1;
+    private static final int CHUNK_BITS = 26;
+    private static final long CHUNK = 1L << CHUNK_BITS;
+    private static final int HEADER = 64;           // magic:i32 version:i32 top:i64, then unused
+    private static final int TOP_AT = 8;
+    private static final int RECORD = 32;
+    private static final int CLASSES = 22;
+    private static final int FLUSH_MILLIS = 1000;
+
+    // Record kinds
+    private static final int FREE = 0;
+    private static final int STUDENT = 1;
+    private static final int COURSE = 2;
+    private static final int COURSE_NAME = 3;
+    private static final int CATEGORY = 4;
+
+    // Record fields
+    private static final int KIND_AT = 0;
+    private static final int ID_AT = 4;
+    private static final int RUN_AT = 8;
+    private static final int COURSE_AT = 16;
+    private static final int ORDER_AT = 24;
+
+    private final Path dir;
+    private final Area directory;
+    private final Area grades;
+    private final Area names;
+    private final FileLock lock;
+    private final StudentRegistry registry;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    // Guarded by this
+    private final Map<Long, Student> studentAt = new HashMap<>(); // student record -> student
+    private int[] courseNumbers = new int[16];      // course ID -> name number + 1 (0 = none yet)
+    private int courseNames;
+    private final byte[] categoryToFile = new byte[GradeCategories.MAX + 1];
+    private final byte[] categoryFromFile = new byte[GradeCategories.MAX + 1];
+    private int categories = 1;                     // file category 0 is "none"
+    private long nextOrder;
+
+    // ===== RUNS =====
+
+    // One course's grades in the grades file. Guarded by the student's lock,
+    // like the GradeList that owns it.
+    static final class Run {
+        final GradeStore store;
+        long record;  // the course's directory record; -1 once it's out of the roster
+        long offset;
+        int sizeClass;
+
+        Run(GradeStore store, long record, long offset, int sizeClass) {
+            this.store = store;
+            this.record = record;
+            this.offset = offset;
+            this.sizeClass = sizeClass;
+        }
+
+        int grade(int index) {
+            return store.grades.getInt(offset + (long) GRADE_BYTES * index);
+        }
+
+        int category(int index) {
+            return store.categoryFromFile[store.grades.get(offset + (long) GRADE_BYTES * index + 4) & 0xFF] & 0xFF;
+        }
+
+        void set(int index, int grade) {
+            store.grades.putInt(offset + (long) GRADE_BYTES * index, grade);
+        }
+
+        // Appending to a run with room is written in place and published by
+        // the new length; anything else goes to a fresh run first
+        void insert(int index, int size, int grade, int category) {
+            byte fileCategory = store.fileCategory(category);
+            if (index == size && size < capacity(sizeClass)) {
+                write(offset, index, grade, fileCategory);
+                publish(size + 1);
+                return;
+            }
+            if (size >= MAX_GRADES) {
+                throw new IllegalStateException("More than " + MAX_GRADES + " grades in one course");
+            }
+            int newClass = size < capacity(sizeClass) ? sizeClass : sizeClass + 1;
+            long to = store.allocateRun(newClass);
+            store.grades.copy(offset, to, (long) GRADE_BYTES * index);
+            write(to, index, grade, fileCategory);
+            store.grades.copy(offset + (long) GRADE_BYTES * index, to + (long) GRADE_BYTES * (index + 1),
+                    (long) GRADE_BYTES * (size - index));
+            switchTo(to, newClass, size + 1);
+        }
+
+        void remove(int index, int size) {
+            long to = store.allocateRun(sizeClass);
+            store.grades.copy(offset, to, (long) GRADE_BYTES * index);
+            store.grades.copy(offset + (long) GRADE_BYTES * (index + 1), to + (long) GRADE_BYTES * index,
+                    (long) GRADE_BYTES * (size - index - 1));
+            switchTo(to, sizeClass, size - 1);
+        }
+
+        private void write(long run, int index, int grade, byte fileCategory) {
+            long at = run + (long) GRADE_BYTES * index;
+            store.grades.putInt(at, grade);
+            store.grades.put(at + 4, fileCategory);
+        }
+
+        private void publish(int length) {
+            if (record >= 0) store.directory.putLong(record + RUN_AT, runWord(offset, sizeClass, length));
+        }
+
+        // Nothing else refers to the old run, so it can be reused at once
+        private void switchTo(long to, int newClass, int length) {
+            long old = offset;
+            int oldClass = sizeClass;
+            offset = to;
+            sizeClass = newClass;
+            publish(length);
+            store.freeRun(old, oldClass);
+        }
+    }
+
+    static int capacity(int sizeClass) {
+        return 4 << sizeClass;
+    }
+
+    private static int classFor(int grades) {
+        int sizeClass = 0;
+        while (capacity(sizeClass) < grades) sizeClass++;
+        return sizeClass;
+    }
+
+    private static long runWord(long offset, int sizeClass, int length) {
+        return offset << 29 | (long) sizeClass << 24 | length;
+    }
+
+    private static long runOffset(long word) {
+        return word >>> 29;
+    }
+
+    private static int runClass(long word) {
+        return (int) (word >>> 24) & 31;
+    }
+
+    private static int runLength(long word) {
+        return (int) word & 0xFFFFFF;
+    }
+
+    // ===== OPENING =====
+
+    static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(DIRECTORY_FILE));
+    }
+
+    // Loads the store's students into the registry. A new store instead
+    // takes in whatever the registry already holds (a roster loaded the
+    // usual way). Every later change made through the registry is kept.
+    static GradeStore open(StudentRegistry registry, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        GradeStore store = new GradeStore(registry, dir);
+        try {
+            registry.lockExclusive();
+            try {
+                if (store.directory.top > HEADER) {
+                    if (registry.size() > 0) {
+                        throw new IllegalStateException("The roster isn't empty");
+                    }
+                    store.load();
+                } else {
+                    synchronized (store) {
+                        for (Student s : registry.all()) store.attach(s);
+                    }
+                }
+                registry.addListener(store);
+            } finally {
+                registry.unlockExclusive();
+            }
+        } catch (RuntimeException e) {
+            store.release();
+            throw e;
+        }
+        store.flusher.start();
+        return store;
+    }
+
+    private GradeStore(StudentRegistry registry, Path dir) throws IOException {
+        this.registry = registry;
+        this.dir = dir;
+        directory = new Area(dir.resolve(DIRECTORY_FILE), RECORD);
+        FileLock locked = null;
+        try {
+            locked = directory.channel.tryLock();
+            if (locked == null) {
+                throw new IOException(dir + " is in use by another process");
+            }
+            grades = new Area(dir.resolve(GRADES_FILE), GRADE_BYTES * capacity(0));
+            names = new Area(dir.resolve(NAMES_FILE), 16);
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            throw e;
+        }
+        lock = locked;
+        flusher = new Thread(this::flushLoop, "grade-store-flush");
+        flusher.setDaemon(true);
+    }
+
+    // Caller holds the registry's write lock
+    private void load() {
+        List<String> courseNameList = new ArrayList<>();
+        Map<Integer, Student> byId = new HashMap<>();
+        List<Student> loaded = new ArrayList<>();
+        boolean idOrder = true;
+        int lastId = 0;
+
+        // Names and students first, so courses can find theirs
+        for (long r = HEADER; r < directory.top; r += RECORD) {
+            int kind = directory.getInt(r + KIND_AT);
+            if (kind == FREE) {
+                directory.free(r, 0);
+            } else if (kind == STUDENT) {
+                Student s = new Student(readName(directory.getLong(r + RUN_AT)), directory.getInt(r + ID_AT));
+                byId.put(s.id(), s);
+                loaded.add(s);
+                studentAt.put(r, s);
+                s.storeRecord = r;
+                idOrder &= s.id() > lastId;
+                lastId = s.id();
+            } else if (kind == COURSE_NAME) {
+                int number = directory.getInt(r + ID_AT);
+                while (courseNameList.size() <= number) courseNameList.add(null);
+                courseNameList.set(number, readName(directory.getLong(r + RUN_AT)));
+            } else if (kind == CATEGORY) {
+                int number = directory.getInt(r + ID_AT);
+                int id = GradeCategories.intern(readName(directory.getLong(r + RUN_AT)));
+                categoryToFile[id] = (byte) number;
+                categoryFromFile[number] = (byte) id;
+                categories = Math.max(categories, number + 1);
+            }
+        }
+        courseNames = courseNameList.size();
+        int[] courseIds = new int[courseNames];
+        for (int n = 0; n < courseNames; n++) {
+            courseIds[n] = CourseNames.intern(courseNameList.get(n));
+            numberCourse(courseIds[n], n);
+        }
+
+        // Then every course, in the order it was added: the order the
+        // records are in, unless some were reused
+        List<long[]> courses = new ArrayList<>(); // {order, record}
+        boolean inOrder = true;
+        for (long r = HEADER; r < directory.top; r += RECORD) {
+            if (directory.getInt(r + KIND_AT) != COURSE) continue;
+            long order = directory.getLong(r + ORDER_AT);
+            inOrder &= order >= nextOrder;
+            nextOrder = Math.max(nextOrder, order + 1);
+            courses.add(new long[] {order, r});
+        }
+        if (!inOrder) courses.sort((a, b) -> Long.compare(a[0], b[0]));
+        for (long[] course : courses) loadCourse(course[1], byId, courseIds);
+
+        if (!idOrder) loaded.sort((a, b) -> Integer.compare(a.id(), b.id()));
+        for (Student s : loaded) registry.add(s);
+        reclaim(grades);
+        reclaim(names);
+    }
+
+    private void loadCourse(long r, Map<Integer, Student> byId, int[] courseIds) {
+        Student s = byId.get(directory.getInt(r + ID_AT));
+        if (s == null) {
+            // Left behind by a student removed mid-way: it goes
+            directory.putInt(r + KIND_AT, FREE);
+            directory.free(r, 0);
+            return;
+        }
+        long word = directory.getLong(r + RUN_AT);
+        Run run = new Run(this, r, runOffset(word), runClass(word));
+        s.addCourse(CourseNames.name(courseIds[directory.getInt(r + COURSE_AT)]),
+                new GradeList(run, runLength(word)));
+    }
+
+    private String readName(long word) {
+        byte[] bytes = new byte[runLength(word)];
+        names.get(runOffset(word), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // The gaps between the runs the directory points at go on the free
+    // lists. Caller holds the registry's write lock.
+    private void reclaim(Area area) {
+        List<long[]> live = new ArrayList<>(); // {offset, end}
+        for (long r = HEADER; r < directory.top; r += RECORD) {
+            int kind = directory.getInt(r + KIND_AT);
+            boolean inArea = area == grades ? kind == COURSE : kind == STUDENT || kind == COURSE_NAME || kind == CATEGORY;
+            if (!inArea) continue;
+            long word = directory.getLong(r + RUN_AT);
+            live.add(new long[] {runOffset(word), runOffset(word) + area.classBytes(runClass(word))});
+        }
+        live.sort((a, b) -> Long.compare(a[0], b[0]));
+        long from = HEADER;
+        for (long[] run : live) {
+            area.freeGap(from, run[0]);
+            from = Math.max(from, run[1]);
+        }
+        area.freeGap(from, area.top);
+    }
+
+    // ===== CHANGES =====
+
+    @Override
+    public synchronized void studentAdded(Student student) {
+        attach(student);
+    }
+
+    @Override
+    public synchronized void studentRenamed(Student student, String oldName) {
+        long record = recordOf(student);
+        if (record < 0) return;
+        long old = directory.getLong(record + RUN_AT);
+        directory.putLong(record + RUN_AT, writeName(student.name));
+        names.free(runOffset(old), runClass(old));
+    }
+
+    @Override
+    public synchronized void studentRemoved(Student student) {
+        detach(student);
+    }
+
+    @Override
+    public synchronized void rosterCleared(List<Student> removed) {
+        for (Student s : removed) detach(s);
+    }
+
+    @Override
+    public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+        if (newCourse) attachNew(student, course);
+    }
+
+    @Override
+    public void gradeInserted(Student student, String course, int index, int grade, String category,
+                              boolean newCourse) {
+        if (newCourse) attachNew(student, course);
+    }
+
+    // A course that went in before the last one (see RosterHistory) gets
+    // the newest order number, so the courses after it are renumbered after
+    // it again
+    @Override
+    public synchronized void courseAdded(Student student, String course, int slot) {
+        if (!attachNew(student, course)) return;
+        for (int c = slot + 1; c < student.courseCount(); c++) {
+            Run run = student.gradesAt(c).run();
+            if (run != null && run.record >= 0) directory.putLong(run.record + ORDER_AT, nextOrder++);
+        }
+    }
+
+    // False if the student isn't (or no longer is) in the roster
+    private synchronized boolean attachNew(Student student, String course) {
+        if (recordOf(student) < 0) return false;
+        attachCourse(student, CourseNames.find(course), student.grades(course));
+        return true;
+    }
+
+    @Override
+    public synchronized void courseRemoved(Student student, String course, int slot, GradeList removed) {
+        detachCourse(removed);
+    }
+
+    // Edits, removals and appends are written by the GradeList itself
+
+    // ===== RECORDS =====
+
+    // Caller holds this
+    private void attach(Student s) {
+        synchronized (s) {
+            for (int c = 0; c < s.courseCount(); c++) {
+                attachCourse(s, s.courseId(c), s.gradesAt(c));
+            }
+        }
+        long record = newRecord();
+        directory.putInt(record + ID_AT, s.id());
+        directory.putLong(record + RUN_AT, writeName(s.name));
+        directory.putInt(record + KIND_AT, STUDENT);
+        studentAt.put(record, s);
+        s.storeRecord = record;
+    }
+
+    // Copies the grades into a run unless they're in one of ours already
+    // (a removed student or course coming back), then records the course
+    private void attachCourse(Student s, int courseId, GradeList list) {
+        Run run = list.run();
+        int size = list.size();
+        if (run == null || run.store != this) {
+            int sizeClass = classFor(Math.max(size, 1));
+            run = new Run(this, -1, allocateRun(sizeClass), sizeClass);
+            for (int i = 0; i < size; i++) {
+                run.write(run.offset, i, list.get(i), fileCategory(list.category(i)));
+            }
+            list.moveTo(run);
+        } else if (run.record >= 0) {
+            return;
+        }
+        long record = newRecord();
+        directory.putInt(record + ID_AT, s.id());
+        directory.putLong(record + RUN_AT, runWord(run.offset, run.sizeClass, size));
+        directory.putInt(record + COURSE_AT, courseNumber(courseId));
+        directory.putLong(record + ORDER_AT, nextOrder++);
+        directory.putInt(record + KIND_AT, COURSE);
+        run.record = record;
+    }
+
+    // The student's record goes first: courses left behind by a crash
+    // right after are dropped on the next open
+    private void detach(Student s) {
+        long record = recordOf(s);
+        if (record < 0) return;
+        directory.putInt(record + KIND_AT, FREE);
+        long word = directory.getLong(record + RUN_AT);
+        names.free(runOffset(word), runClass(word));
+        directory.free(record, 0);
+        studentAt.remove(record);
+        s.storeRecord = 0;
+        synchronized (s) {
+            for (int c = 0; c < s.courseCount(); c++) {
+                detachCourse(s.gradesAt(c));
+            }
+        }
+    }
+
+    // The run itself stays as it is until the next open (undo may read it)
+    private void detachCourse(GradeList list) {
+        Run run = list.run();
+        if (run == null || run.store != this || run.record < 0) return;
+        directory.putInt(run.record + KIND_AT, FREE);
+        directory.free(run.record, 0);
+        run.record = -1;
+    }
+
+    private long recordOf(Student s) {
+        long record = s.storeRecord;
+        return record != 0 && studentAt.get(record) == s ? record : -1;
+    }
+
+    private long newRecord() {
+        return directory.take(0);
+    }
+
+    private long writeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= 1 << 24) throw new IllegalArgumentException("Name too long");
+        int sizeClass = 0;
+        while (names.classBytes(sizeClass) < bytes.length) sizeClass++;
+        long at = names.take(sizeClass);
+        names.put(at, bytes);
+        return runWord(at, sizeClass, bytes.length);
+    }
+
+    // Course name number in the file, adding the name the first time
+    private int courseNumber(int courseId) {
+        if (courseId < courseNumbers.length && courseNumbers[courseId] != 0) {
+            return courseNumbers[courseId] - 1;
+        }
+        int number = courseNames++;
+        long record = newRecord();
+        directory.putInt(record + ID_AT, number);
+        directory.putLong(record + RUN_AT, writeName(CourseNames.name(courseId)));
+        directory.putInt(record + KIND_AT, COURSE_NAME);
+        numberCourse(courseId, number);
+        return number;
+    }
+
+    private void numberCourse(int courseId, int number) {
+        if (courseId >= courseNumbers.length) {
+            courseNumbers = Arrays.copyOf(courseNumbers, Math.max(courseId + 1, courseNumbers.length * 2));
+        }
+        courseNumbers[courseId] = number + 1;
+    }
+
+    // Category number in the file, adding the name the first time
+    private synchronized byte fileCategory(int category) {
+        if (category == GradeCategories.NONE || categoryToFile[category] != 0) {
+            return categoryToFile[category];
+        }
+        int number = categories++;
+        long record = newRecord();
+        directory.putInt(record + ID_AT, number);
+        directory.putLong(record + RUN_AT, writeName(GradeCategories.name(category)));
+        directory.putInt(record + KIND_AT, CATEGORY);
+        categoryFromFile[number] = (byte) category;
+        categoryToFile[category] = (byte) number;
+        return (byte) number;
+    }
+
+    private synchronized long allocateRun(int sizeClass) {
+        return grades.take(sizeClass);
+    }
+
+    private synchronized void freeRun(long offset, int sizeClass) {
+        grades.free(offset, sizeClass);
+    }
+
+    // ===== DURABILITY =====
+
+    // Asks the OS to write every changed page to disk
+    void force() {
+        directory.force();
+        grades.force();
+        names.force();
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!closed) force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        flusher.interrupt();
+        registry.removeListener(this);
+        synchronized (this) {
+            force();
+        }
+        release();
+    }
+
+    private void release() throws IOException {
+        try {
+            if (lock != null && lock.isValid()) lock.release();
+        } finally {
+            directory.close();
+            grades.close();
+            names.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+
+    // ===== FILES =====
+
+    // One file, mapped a chunk at a time. Nothing in it crosses a chunk
+    // boundary, so every access is to one buffer. Space is handed out in
+    // size classes of unit << class bytes, from a free list or the top.
+    private static final class Area {
+        final FileChannel channel;
+        final int unit;
+        private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+        long top;   // guarded by the store
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final ArrayDeque<Long>[] free = new ArrayDeque[CLASSES];
+
+        Area(Path path, int unit) throws IOException {
+            this.unit = unit;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            for (int c = 0; c < CLASSES; c++) free[c] = new ArrayDeque<>();
+            try {
+                boolean fresh = channel.size() == 0;
+                map(HEADER);
+                if (fresh) {
+                    putInt(0, MAGIC);
+                    putInt(4, VERSION);
+                    setTop(HEADER);
+                } else if (getInt(0) != MAGIC || getInt(4) != VERSION) {
+                    throw new IOException(path + " is not a grade store file");
+                } else {
+                    top = getLong(TOP_AT);
+                    map(top);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        long classBytes(int sizeClass) {
+            return (long) unit << sizeClass;
+        }
+
+        // Caller holds the store's lock
+        long take(int sizeClass) {
+            Long reused = free[sizeClass].poll();
+            if (reused != null) return reused;
+            // Split the smallest bigger free run: its first part is taken and
+            // the rest go back as one run of each class in between
+            for (int bigger = sizeClass + 1; bigger < CLASSES; bigger++) {
+                Long at = free[bigger].poll();
+                if (at == null) continue;
+                for (int c = bigger - 1; c >= sizeClass; c--) free[c].push(at + classBytes(c));
+                return at;
+            }
+            return allocate(sizeClass);
+        }
+
+        void free(long offset, int sizeClass) {
+            free[sizeClass].push(offset);
+        }
+
+        long allocate(int sizeClass) {
+            long bytes = classBytes(sizeClass);
+            long at = top;
+            if ((at & (CHUNK - 1)) + bytes > CHUNK) {
+                freeGap(at, (at | (CHUNK - 1)) + 1); // the rest of this chunk
+                at = (at | (CHUNK - 1)) + 1;
+            }
+            if (at + bytes > 1L << 35) {
+                throw new IllegalStateException("Grade store file is full");
+            }
+            map(at + bytes);
+            setTop(at + bytes);
+            return at;
+        }
+
+        // Carves [from, to) into free runs, biggest first
+        void freeGap(long from, long to) {
+            while (from < to) {
+                long chunkEnd = (from | (CHUNK - 1)) + 1;
+                long room = Math.min(to, chunkEnd) - from;
+                int sizeClass = CLASSES - 1;
+                while (sizeClass >= 0 && classBytes(sizeClass) > room) sizeClass--;
+                if (sizeClass < 0) {
+                    from = Math.min(to, chunkEnd);
+                    continue;
+                }
+                free[sizeClass].push(from);
+                from += classBytes(sizeClass);
+            }
+        }
+
+        void setTop(long value) {
+            top = value;
+            putLong(TOP_AT, value);
+        }
+
+        // Maps chunks until `end` is covered; the file grows to match
+        private void map(long end) {
+            MappedByteBuffer[] current = chunks;
+            int needed = (int) ((end + CHUNK - 1) >>> CHUNK_BITS);
+            if (needed <= current.length) return;
+            MappedByteBuffer[] grown = Arrays.copyOf(current, needed);
+            try {
+                for (int c = current.length; c < needed; c++) {
+                    grown[c] = channel.map(FileChannel.MapMode.READ_WRITE, (long) c << CHUNK_BITS, CHUNK);
+                    grown[c].order(ByteOrder.LITTLE_ENDIAN);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not grow the grade store: " + e.getMessage(), e);
+            }
+            chunks = grown;
+        }
+
+        private MappedByteBuffer chunk(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)];
+        }
+
+        int getInt(long pos) {
+            return chunk(pos).getInt((int) (pos & (CHUNK - 1)));
+        }
+
+        void putInt(long pos, int value) {
+            chunk(pos).putInt((int) (pos & (CHUNK - 1)), value);
+        }
+
+        long getLong(long pos) {
+            return chunk(pos).getLong((int) (pos & (CHUNK - 1)));
+        }
+
+        void putLong(long pos, long value) {
+            chunk(pos).putLong((int) (pos & (CHUNK - 1)), value);
+        }
+
+        byte get(long pos) {
+            return chunk(pos).get((int) (pos & (CHUNK - 1)));
+        }
+
+        void put(long pos, byte value) {
+            chunk(pos).put((int) (pos & (CHUNK - 1)), value);
+        }
+
+        void get(long pos, byte[] into) {
+            chunk(pos).get((int) (pos & (CHUNK - 1)), into);
+        }
+
+        void put(long pos, byte[] from) {
+            chunk(pos).put((int) (pos & (CHUNK - 1)), from);
+        }
+
+        // Both ranges lie within a run, so within a chunk
+        void copy(long from, long to, long bytes) {
+            if (bytes == 0) return;
+            MappedByteBuffer source = chunk(from);
+            chunk(to).put((int) (to & (CHUNK - 1)), source, (int) (from & (CHUNK - 1)), (int) bytes);
+        }
+
+        void force() {
+            for (MappedByteBuffer chunk : chunks) chunk.force();
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Turns an average into a letter. A scale is a list of letters with the
+// lowest average that earns each, best first, e.g. "A:90,B:80,C:70,D:60,F:0"
+// (the old hard-coded A-F chain). Thresholds may have up to two decimals.
+//
+// Every scale is precomputed into a table with one entry per hundredth of
+// a point from 0.00 to 100.00, so letter() is a clamp and an array read no
+// matter how many letters the scale has. Averages below 0 or above 100 get
+// the lowest/highest letter, like the old chain did.
+//
+// Scales come from grading.properties (see load()); without it every
+// course uses the A-F scale:
+//
+//   scale=A:90,B:80,C:70,D:60,F:0              default for every course
+//   scale.plusminus=A+:97,A:93,A-:90,B+:87,... extra named scales
+//   scale.passfail=P:60,F:0
+//   course.Math.scale=plusminus                 a course's scale ...
+//   course.Computer\ Science.curve=5            ... and/or points added to
+//                                               its averages before lookup
+//
+// The same file holds category weights, credit hours and grade points;
+// those are handed to CourseRules.
+final class GradingScale {
+
+    static final String DEFAULT_SPEC = "A:90,B:80,C:70,D:60,F:0";
+
+    private static final int STEPS = 100 * 100; // table covers 0.00 .. 100.00
+
+    private static volatile GradingScale defaultScale = parse(DEFAULT_SPEC);
+    private static volatile Map<String, GradingScale> byCourse = new ConcurrentHashMap<>();
+
+    private final String[] table = new String[STEPS + 1];
+    private final List<String> letters; // best first
+    private final String spec;
+
+    private GradingScale(String spec, List<String> letters, int[] minimums, int curveHundredths) {
+        this.spec = spec;
+        this.letters = Collections.unmodifiableList(letters);
+        // minimums are in hundredths, best letter first; the last letter is
+        // the floor for anything below every threshold
+        int next = 0;
+        for (int step = STEPS; step >= 0; step--) {
+            int curved = step + curveHundredths;
+            while (next < minimums.length - 1 && curved < minimums[next]) next++;
+            table[step] = letters.get(next);
+        }
+    }
+
+    // ===== LOOKUP =====
+
+    String letter(double average) {
+        // Math.max/min compile to conditional moves, not branches
+        int step = (int) Math.max(0, Math.min(STEPS, Math.floor(average * 100)));
+        return table[step];
+    }
+
+    // Exact for any sum/count - what the export uses
+    String letter(long sum, int count) {
+        if (count == 0) return table[0];
+        long step = Math.floorDiv(sum * 100, count);
+        return table[(int) Math.max(0, Math.min(STEPS, step))];
+    }
+
+    // Letters this scale can give, best first
+    List<String> letters() {
+        return letters;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    // ===== SCALES IN USE =====
+
+    static GradingScale defaultScale() {
+        return defaultScale;
+    }
+
+    // The scale (with its curve) for one course
+    static GradingScale forCourse(String course) {
+        GradingScale scale = byCourse.get(course);
+        return scale != null ? scale : defaultScale;
+    }
+
+    // Reads grading.properties (or whatever file is given) and makes its
+    // scales the ones in use. Call at startup, before anything is graded:
+    // letters already counted elsewhere (e.g. RosterAnalytics) aren't redone.
+    static void load(Path file) throws IOException {
+        Properties config = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            config.load(in);
+        }
+
+        Map<String, String> named = new HashMap<>();
+        Map<String, String> courseScale = new HashMap<>();
+        Map<String, String> courseCurve = new HashMap<>();
+        Map<String, String> courseWeights = new HashMap<>();
+        Map<String, String> courseCredits = new HashMap<>();
+        for (String key : config.stringPropertyNames()) {
+            String value = config.getProperty(key).trim();
+            if (key.startsWith("scale.")) {
+                named.put(key.substring("scale.".length()), value);
+            } else if (key.startsWith("course.") && key.endsWith(".scale")) {
+                courseScale.put(key.substring("course.".length(), key.length() - ".scale".length()), value);
+            } else if (key.startsWith("course.") && key.endsWith(".curve")) {
+                courseCurve.put(key.substring("course.".length(), key.length() - ".curve".length()), value);
+            } else if (key.startsWith("course.") && key.endsWith(".weights")) {
+                courseWeights.put(key.substring("course.".length(), key.length() - ".weights".length()), value);
+            } else if (key.startsWith("course.") && key.endsWith(".credits")) {
+                courseCredits.put(key.substring("course.".length(), key.length() - ".credits".length()), value);
+            } else if (!key.equals("scale") && !key.equals("points")) {
+                throw new IOException(file.getFileName() + ": unknown setting " + key);
+            }
+        }
+
+        try {
+            apply(config.getProperty("scale", DEFAULT_SPEC).trim(), named, courseScale, courseCurve,
+                    () -> CourseRules.configure(courseWeights, courseCredits, config.getProperty("points")));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    // Checks everything first so a bad file changes nothing; alsoApply runs
+    // (and may still fail) before the new scales are put in place
+    private static void apply(String defaultSpec, Map<String, String> named,
+                              Map<String, String> courseScale, Map<String, String> courseCurve,
+                              Runnable alsoApply) {
+        Map<String, GradingScale> courses = new ConcurrentHashMap<>();
+        List<String> configured = new ArrayList<>(courseScale.keySet());
+        for (String course : courseCurve.keySet()) {
+            if (!courseScale.containsKey(course)) configured.add(course);
+        }
+        for (String course : configured) {
+            String spec = defaultSpec;
+            String scaleName = courseScale.get(course);
+            if (scaleName != null) {
+                spec = named.get(scaleName);
+                if (spec == null) {
+                    throw new IllegalArgumentException("course " + course
+                            + " uses unknown scale " + scaleName);
+                }
+            }
+            double curve = 0;
+            if (courseCurve.containsKey(course)) {
+                curve = parseNumber(courseCurve.get(course), "curve for " + course);
+            }
+            courses.put(course, parse(spec, curve));
+        }
+
+        GradingScale newDefault = parse(defaultSpec);
+        alsoApply.run();
+        defaultScale = newDefault;
+        byCourse = courses;
+    }
+
+    // ===== PARSING =====
+
+    static GradingScale parse(String spec) {
+        return parse(spec, 0);
+    }
+
+    // curve: points added to an average before it's looked up
+    static GradingScale parse(String spec, double curve) {
+        List<String> letters = new ArrayList<>();
+        List<Integer> minimums = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Bad grading scale entry '" + part.trim()
+                        + "' (expected LETTER:MINIMUM)");
+            }
+            String letter = part.substring(0, colon).trim();
+            int minimum = toHundredths(parseNumber(part.substring(colon + 1), "minimum for " + letter));
+            if (!minimums.isEmpty() && minimum >= minimums.get(minimums.size() - 1)) {
+                throw new IllegalArgumentException("Grading scale must go from the best letter down: "
+                        + spec);
+            }
+            letters.add(letter.intern());
+            minimums.add(minimum);
+        }
+        int[] mins = new int[minimums.size()];
+        for (int i = 0; i < mins.length; i++) mins[i] = minimums.get(i);
+        String shown = curve == 0 ? spec : spec + " (curve " + curve + ")";
+        return new GradingScale(shown, letters, mins, toHundredths(curve));
+    }
+
+    private static double parseNumber(String text, String what) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + what + ": " + text.trim());
+        }
+    }
+
+    private static int toHundredths(double points) {
+        return (int) Math.round(points * 100);
+    }
+}
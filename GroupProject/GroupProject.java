@@ -1,56 +1,51 @@
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.*; // <-- added for saving to file
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
-class Student {
-    String name;
-    Map<String, ArrayList<Integer>> courses;
+public class GroupProject {
 
-    public Student(String name) {
-        this.name = name;
-        this.courses = new HashMap<>();
-    }
+    // ===== SHARED DATA (used by both console and GUI) =====
+    private static final StudentRegistry students = new StudentRegistry();
 
-    public void addGrade(String course, int grade) {
-        courses.putIfAbsent(course, new ArrayList<>());
-        courses.get(course).add(grade);
-    }
+    // Default file for binary snapshots (see RosterSnapshot)
+    private static final String SNAPSHOT_FILE = "students.roster";
 
-    public double calculateAverage(String course) {
-        ArrayList<Integer> grades = courses.get(course);
-        if (grades == null || grades.isEmpty()) return 0.0;
+    // Optional letter-grade scales and curves (see GradingScale)
+    private static final String GRADING_FILE = "grading.properties";
 
-        int sum = 0;
-        for (int grade : grades) {
-            sum += grade;
-        }
-        return sum / (double) grades.size();
-    }
+    // Every change is journaled here between snapshots (see RosterJournal)
+    private static final String JOURNAL_FILE = "students.journal";
+    private static RosterJournal journal; // null with the mapped store
 
-    public String convertToLetterGrade(double average) {
-        if (average >= 90) return "A";
-        else if (average >= 80) return "B";
-        else if (average >= 70) return "C";
-        else if (average >= 60) return "D";
-        else return "F";
-    }
+    // With -Droster.store=mapped the roster lives in memory-mapped files
+    // here instead of the snapshot and journal (see GradeStore)
+    private static final String GRADE_STORE_DIR = "students.grades";
+    private static final boolean MAPPED_STORE = "mapped".equalsIgnoreCase(System.getProperty("roster.store"));
+    private static GradeStore gradeStore; // null unless MAPPED_STORE and it opened
 
-    @Override
-    public String toString() {
-        return name;
-    }
-}
+    // Every change as an event, for in-process subscribers (see
+    // RosterEvents); with -Droster.events=FILE they're also appended there
+    private static RosterEvents events;
 
-public class GroupProject {
+    // Class statistics, built the first time they're asked for and kept up
+    // to date from then on (see RosterAnalytics)
+    private static RosterAnalytics analytics;
+    private static final int TOP_SHOWN = 5;
 
-    // ===== SHARED DATA (used by both console and GUI) =====
-    private static final ArrayList<Student> students = new ArrayList<>();
-    private static final Scanner scanner = new Scanner(System.in);
+    // Undo/redo for the GUI and console (see RosterHistory); null in server
+    // mode, where there's nobody to undo for
+    private static RosterHistory history;
 
     // Predefined courses for the dropdown (GUI)
     private static final String[] COURSES = {
@@ -60,14 +55,51 @@ public class GroupProject {
     // ===== GUI FIELDS =====
     private JFrame frame;
     private JTextArea outputArea;
+    private JTabbedPane tabs;
+    private JTable rosterTable; // built the first time Display All Students is used
+
+    // Status bar for the roster-wide job that is running, if any
+    private JPanel taskPanel;
+    private JLabel taskLabel;
+    private JProgressBar taskProgress;
+    private JButton cancelTaskBtn;
+    private BackgroundTask<?> currentTask;
+
+    // Runs long jobs (like saving) off the Swing event thread, one at a time.
+    // GUI jobs go through runTask() so they get the progress bar and Cancel.
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "roster-background");
+        t.setDaemon(true);
+        return t;
+    });
 
     // ===== MAIN: choose mode (GUI by default) =====
     public static void main(String[] args) {
-        // If you run with argument "console", use the text-based menu
+        loadGradingScales();
+        openStore();
+        startEventLog();
+        RosterMetrics.attach(students);
+        startMetricsDump();
+
+        // If you run with argument "console", use the text-based menu;
+        // "server [port [address]]" serves the roster over HTTP instead;
+        // "batch [script]" runs console answers from a script or stdin;
+        // "router [port [shards]]" splits it across worker JVMs (see ShardRouter)
         if (args.length > 0 && args[0].equalsIgnoreCase("console")) {
+            history = RosterHistory.attach(students);
             runConsoleMenu();
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("server")) {
+            runServer(args);
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("router")) {
+            runRouter(args);
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("shard")) {
+            runShard(args);
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+            history = RosterHistory.attach(students);
+            runBatch(args);
         } else {
             // Otherwise, start the GUI
+            history = RosterHistory.attach(students);
             SwingUtilities.invokeLater(() -> {
                 GroupProject app = new GroupProject();
                 app.createAndShowGUI();
@@ -75,143 +107,726 @@ public class GroupProject {
         }
     }
 
+    // ===== PERSISTENCE: snapshot + journal =====
+
+    private static void loadGradingScales() {
+        Path file = Paths.get(GRADING_FILE);
+        if (!Files.exists(file)) return; // A-F everywhere
+        try {
+            GradingScale.load(file);
+        } catch (IOException e) {
+            System.err.println("Could not load " + GRADING_FILE + " (" + e.getMessage()
+                    + "); using the default A-F scale.");
+        }
+    }
+
+    // Brings back the roster from the last run (snapshot + journal replay)
+    // and journals every change from now on. Runs before any mode starts.
+    // Without its files the app doesn't start: running on with part of the
+    // roster, or none of it, would let Save Snapshot overwrite the real one.
+    private static void openStore() {
+        if (MAPPED_STORE) {
+            openGradeStore();
+            return;
+        }
+        try {
+            journal = RosterJournal.open(students, Paths.get(SNAPSHOT_FILE), Paths.get(JOURNAL_FILE));
+        } catch (IOException | RuntimeException e) {
+            refuseToStart(JOURNAL_FILE, e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + JOURNAL_FILE + ": " + e.getMessage());
+            }
+        }));
+    }
+
+    // The first time, the roster comes over from the snapshot and journal,
+    // which are compacted on the way so that they hold it all too. They
+    // aren't kept up to date after that: Save Snapshot before going back.
+    private static void openGradeStore() {
+        Path dir = Paths.get(GRADE_STORE_DIR);
+        try {
+            if (!GradeStore.exists(dir)
+                    && (Files.exists(Paths.get(SNAPSHOT_FILE)) || Files.exists(Paths.get(JOURNAL_FILE)))) {
+                RosterJournal old = RosterJournal.open(students, Paths.get(SNAPSHOT_FILE), Paths.get(JOURNAL_FILE));
+                try {
+                    old.compact(students);
+                } finally {
+                    students.removeListener(old);
+                    old.close();
+                }
+            }
+            gradeStore = GradeStore.open(students, dir);
+        } catch (IOException | RuntimeException e) {
+            refuseToStart(GRADE_STORE_DIR, e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                gradeStore.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + GRADE_STORE_DIR + ": " + e.getMessage());
+            }
+        }));
+    }
+
+    private static void refuseToStart(String file, Exception e) {
+        System.err.println("Could not open " + file + " (" + e.getMessage() + ").");
+        System.err.println("Nothing was changed. Fix or move it aside and start again.");
+        System.exit(1);
+    }
+
+    // Writes students.roster (and compacts the journal when it's running).
+    // Roster changes from other threads wait until it's done.
+    private static void writeSnapshot() throws IOException {
+        if (journal != null) {
+            journal.compact(students);
+            return;
+        }
+        students.lockExclusive();
+        try {
+            RosterSnapshot.write(students.all(), Paths.get(SNAPSHOT_FILE));
+        } finally {
+            students.unlockExclusive();
+        }
+    }
+
+    // Folds a long journal into a fresh snapshot so startup replay stays short
+    private static void compactIfDue() {
+        if (journal == null || !journal.compactionDue()) return;
+        try {
+            journal.compact(students);
+        } catch (IOException e) {
+            System.err.println("Journal compaction failed: " + e.getMessage());
+        }
+    }
+
+    // Changes made from now on go to the -Droster.events file, one line
+    // each; whatever is still queued is written out at exit
+    private static void startEventLog() {
+        String file = System.getProperty("roster.events");
+        if (file == null || file.trim().isEmpty()) return;
+        events = RosterEvents.attach(students);
+        RosterEvents.Subscription log;
+        try {
+            log = events.subscribe("log", RosterEvents.log(Paths.get(file.trim())));
+        } catch (IOException e) {
+            System.err.println("Could not open " + file + " (" + e.getMessage() + "); changes will not be logged.");
+            events.detach();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            events.detach();
+            try {
+                log.awaitClosed(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+
+    // With -Droster.metrics.dump=SECONDS the metrics (see RosterMetrics) go
+    // to stderr that often, whatever the mode
+    private static void startMetricsDump() {
+        long seconds = Long.getLong("roster.metrics.dump", 0);
+        if (seconds <= 0) return;
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> System.err.print(RosterMetrics.dump()),
+                seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    // ===================== SERVER VERSION =====================
+
+    // Listens on localhost unless an address is given (e.g. 0.0.0.0 for
+    // every interface); runs until the process is stopped
+    private static void runServer(String[] args) {
+        int port = RosterServer.DEFAULT_PORT;
+        String address = "127.0.0.1";
+        try {
+            if (args.length > 1) port = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: GroupProject server [port [address]]");
+            return;
+        }
+        if (args.length > 2) address = args[2];
+
+        RosterServer server = new RosterServer(students, journal, GroupProject::compactIfDue);
+        try {
+            server.start(address, port);
+        } catch (IOException e) {
+            System.err.println("Could not start the server on " + address + ":" + port + " (" + e.getMessage() + ")");
+            return;
+        }
+        System.out.println("Serving " + students.size() + " students on http://" + address + ":"
+                + server.port() + "/students");
+    }
+
+    // "router [port [shards]]": starts `shards` worker JVMs on the ports
+    // after `port`, each with its own files under shards/, and serves the
+    // same HTTP API as server mode in front of them
+    private static void runRouter(String[] args) {
+        int port = RosterServer.DEFAULT_PORT;
+        int count = ShardRouter.DEFAULT_SHARDS;
+        try {
+            if (args.length > 1) port = Integer.parseInt(args[1]);
+            if (args.length > 2) count = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            count = 0;
+        }
+        if (count < 1) {
+            System.err.println("Usage: GroupProject router [port [shards]]");
+            return;
+        }
+
+        ShardRouter router = new ShardRouter(count, port + 1);
+        try {
+            router.startShards(students.all(), SNAPSHOT_FILE);
+            router.start("127.0.0.1", port);
+        } catch (IOException e) {
+            System.err.println("Could not start the router on port " + port + " (" + e.getMessage() + ")");
+            router.stopShards();
+            System.exit(1);
+        }
+        System.out.println("Routing to " + count + " shards on http://127.0.0.1:" + router.port() + "/students");
+    }
+
+    // "shard <index> <count> [port]": one worker of a router, run in its
+    // shard's directory. Only on localhost: the router is the way in.
+    private static void runShard(String[] args) {
+        int index;
+        int count;
+        int port = RosterServer.DEFAULT_PORT;
+        try {
+            index = Integer.parseInt(args[1]);
+            count = Integer.parseInt(args[2]);
+            if (args.length > 3) port = Integer.parseInt(args[3]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            index = -1;
+            count = 0;
+        }
+        if (index < 0 || index >= count) {
+            System.err.println("Usage: GroupProject shard <index> <count> [port]");
+            System.exit(1);
+        }
+
+        // A roster from another shard or another shard count would be routed wrong
+        for (Student s : students.all()) {
+            if (ShardRouter.owner(s.id(), count) != index) {
+                System.err.println("Student ID " + s.id() + " in " + Paths.get("").toAbsolutePath()
+                        + " does not belong to shard " + index + " of " + count);
+                System.exit(1);
+            }
+        }
+        students.partition(index, count);
+        ShardRouter.exitWithRouter();
+
+        RosterServer server = new RosterServer(students, journal, GroupProject::compactIfDue);
+        try {
+            server.start("127.0.0.1", port);
+        } catch (IOException e) {
+            System.err.println("Could not start shard " + index + " on port " + port + " (" + e.getMessage() + ")");
+            System.exit(1);
+        }
+        System.out.println("Shard " + index + " of " + count + ": " + students.size()
+                + " students on port " + server.port());
+    }
+
     // ===================== CONSOLE VERSION =====================
 
+    // Console input and output. Interactively: the menu, prompts, and output
+    // flushed line by line. In batch mode (GroupProject batch [script]) the
+    // same answers come from a script or piped stdin, with no menu or
+    // prompts, and output goes through one big buffer flushed at the end.
+    // Both run the code below, so a script does exactly what typing it would.
+    //
+    // A script is the answers, one per line, each option number followed by
+    // the lines that option reads:
+    //   1  Add Student          name
+    //   2  Add Grade            name, course, grade, category (may be blank)
+    //   3  Calculate Average    name, course
+    //   4  Display All          -                 (the whole table)
+    //   5  Exit, or the end of the script
+    //   6  Load from File       file (blank: students.txt)
+    //   7  Save Snapshot        -
+    //   8  Import Grades        CSV file
+    //   9  Class Statistics     -
+    //   10 Course Report        course
+    //   11 Metrics, 12 Undo, 13 Redo   -
+    //   14 Find Students        filter, e.g. "course=Math, letter=B, name=an"
+    //                           (page= is ignored: a script gets every row)
+    // 1-5 are the original menu; new options go after them, with new numbers.
+    private static BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+    private static PrintWriter out = new PrintWriter(System.out, true);
+    private static boolean interactive = true;
+
+    private static final int BATCH_BUFFER = 1 << 16;
+
+    private static void runBatch(String[] args) {
+        try {
+            input = args.length > 1
+                    ? Files.newBufferedReader(Paths.get(args[1]))
+                    : new BufferedReader(new InputStreamReader(System.in), BATCH_BUFFER);
+        } catch (IOException e) {
+            System.err.println("Could not read " + args[1] + " (" + e.getMessage() + ")");
+            return;
+        }
+        out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), BATCH_BUFFER), false);
+        interactive = false;
+        try {
+            runConsoleMenu();
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static void prompt(String text) {
+        if (interactive) {
+            out.print(text);
+            out.flush();
+        }
+    }
+
+    // Next line of input; NoSuchElementException at the end, like Scanner
+    private static String nextLine() {
+        try {
+            String line = input.readLine();
+            if (line == null) throw new NoSuchElementException("End of input");
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // What Scanner.nextInt() then nextLine() used to do: skip blank lines,
+    // read the first word and drop the rest of its line, number or not
+    private static int nextInt() {
+        String line;
+        do {
+            line = nextLine().trim();
+        } while (line.isEmpty());
+        int end = 0;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+        return Integer.parseInt(line.substring(0, end));
+    }
+
     private static void runConsoleMenu() {
+        try {
+            consoleLoop();
+        } catch (NoSuchElementException e) {
+            // Input ran out: same as choosing Exit
+        }
+    }
+
+    private static void consoleLoop() {
         while (true) {
-            System.out.println("\n=== Student Grade Management System (Console) ===");
-            System.out.println("1. Add Student");
-            System.out.println("2. Add Grade");
-            System.out.println("3. Calculate Average");
-            System.out.println("4. Display All Students");
-            System.out.println("5. Exit");
-            System.out.print("Choose an option: ");
+            if (interactive) {
+                out.println("\n=== Student Grade Management System (Console) ===");
+                out.println("1. Add Student");
+                out.println("2. Add Grade");
+                out.println("3. Calculate Average");
+                out.println("4. Display All Students");
+                out.println("5. Exit");
+                out.println("6. Load from File");
+                out.println("7. Save Snapshot");
+                out.println("8. Import Grades (CSV)");
+                out.println("9. Class Statistics");
+                out.println("10. Course Report");
+                out.println("11. Metrics");
+                out.println("12. Undo");
+                out.println("13. Redo");
+                out.println("14. Find Students (filter)");
+            }
+            prompt("Choose an option: ");
 
             int choice;
             try {
-                choice = scanner.nextInt();
-            } catch (Exception e) {
-                // If invalid input, clear scanner and continue
-                scanner.nextLine();
-                System.out.println("Invalid input. Try again.");
+                choice = nextInt();
+            } catch (NumberFormatException e) {
+                out.println("Invalid input. Try again.");
                 continue;
             }
-            scanner.nextLine(); // consume leftover newline
-
-            switch (choice) {
-                case 1:
-                    addStudentConsole();
-                    break;
-                case 2:
-                    addGradeConsole();
-                    break;
-                case 3:
-                    calculateAverageConsole();
-                    break;
-                case 4:
-                    displayAllStudentsConsole();
-                    break;
-                case 5:
-                    System.out.println("Exiting console mode...");
-                    return;
-                default:
-                    System.out.println("Invalid choice. Try again.");
+
+            try {
+                switch (choice) {
+                    case 1:
+                        addStudentConsole();
+                        break;
+                    case 2:
+                        addGradeConsole();
+                        break;
+                    case 3:
+                        calculateAverageConsole();
+                        break;
+                    case 4:
+                        displayAllStudentsConsole();
+                        break;
+                    case 5:
+                        out.println("Exiting console mode...");
+                        return;
+                    case 6:
+                        loadFromFileConsole();
+                        break;
+                    case 7:
+                        saveSnapshotConsole();
+                        break;
+                    case 8:
+                        importGradesConsole();
+                        break;
+                    case 9:
+                        out.print(statisticsText());
+                        break;
+                    case 10:
+                        courseReportConsole();
+                        break;
+                    case 11:
+                        out.print(RosterMetrics.dump());
+                        break;
+                    case 12:
+                        out.println(undoText(history.undo(), "Undid: ", "Nothing to undo."));
+                        break;
+                    case 13:
+                        out.println(undoText(history.redo(), "Redid: ", "Nothing to redo."));
+                        break;
+                    case 14:
+                        findStudentsConsole();
+                        break;
+                    default:
+                        out.println("Invalid choice. Try again.");
+                }
+            } catch (UncheckedIOException e) {
+                // The change was made, but the journal couldn't save it
+                out.println(e.getMessage());
             }
+            compactIfDue();
         }
     }
 
     private static void addStudentConsole() {
-        System.out.print("Enter student name: ");
-        String name = scanner.nextLine();
+        prompt("Enter student name: ");
+        String name = nextLine();
         if (name.trim().isEmpty()) {
-            System.out.println("Name cannot be empty.");
+            out.println("Name cannot be empty.");
             return;
         }
-        students.add(new Student(name.trim()));
-        System.out.println("Student added.");
+        students.add(name.trim());
+        out.println("Student added.");
     }
 
     private static void addGradeConsole() {
-        System.out.print("Enter student name: ");
-        String name = scanner.nextLine();
+        prompt("Enter student name: ");
+        String name = nextLine();
 
         Student student = findStudentByName(name);
         if (student == null) {
-            System.out.println("Student not found.");
+            out.println("Student not found.");
             return;
         }
 
-        System.out.print("Enter course name: ");
-        String course = scanner.nextLine();
+        prompt("Enter course name: ");
+        String course = nextLine();
 
-        System.out.print("Enter grade: ");
+        prompt("Enter grade: ");
         int grade;
         try {
-            grade = scanner.nextInt();
-        } catch (Exception e) {
-            scanner.nextLine();
-            System.out.println("Invalid number for grade.");
+            grade = nextInt();
+        } catch (NumberFormatException e) {
+            out.println("Invalid number for grade.");
+            return;
+        }
+        if (grade < 0 || grade > 100) {
+            out.println("Grade must be between 0 and 100.");
             return;
         }
-        scanner.nextLine(); // consume newline
 
-        student.addGrade(course.trim(), grade);
-        System.out.println("Grade added.");
+        prompt("Enter category (e.g. homework, exam; blank for none): ");
+        String category = nextLine();
+
+        try {
+            students.addGrade(student, course.trim(), grade, category);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        out.println("Grade added.");
     }
 
     private static void calculateAverageConsole() {
-        System.out.print("Enter student name: ");
-        String name = scanner.nextLine();
+        prompt("Enter student name: ");
+        String name = nextLine();
 
         Student student = findStudentByName(name);
         if (student == null) {
-            System.out.println("Student not found.");
+            out.println("Student not found.");
             return;
         }
 
-        System.out.print("Enter course name: ");
-        String course = scanner.nextLine();
+        prompt("Enter course name: ");
+        String course = nextLine();
 
         double average = student.calculateAverage(course.trim());
-        String letter = student.convertToLetterGrade(average);
+        String letter = GradingScale.forCourse(course.trim()).letter(average);
 
-        System.out.printf("Average for %s in %s: %.2f (%s)%n",
+        out.printf("Average for %s in %s: %.2f (%s)%n",
                 name, course, average, letter);
+        out.println(gpaText(student));
     }
 
+    // Rows per page when a person is reading; a script gets the whole table
+    private static final int CONSOLE_PAGE = 20;
+
     private static void displayAllStudentsConsole() {
+        showStudentsConsole(new RosterTable.Filter());
+    }
+
+    private static void findStudentsConsole() {
+        prompt("Filter (course=, letter=, name=, page=; blank for all): ");
+        RosterTable.Filter filter;
+        try {
+            filter = RosterTable.Filter.parse(nextLine());
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        showStudentsConsole(filter);
+    }
+
+    // Pages only for a person: in a script, "Enter for more" would eat the
+    // next command
+    private static void showStudentsConsole(RosterTable.Filter filter) {
+        if (students.isEmpty()) {
+            out.println("No students found.");
+            return;
+        }
+
+        int pageSize = !interactive ? 0 : filter.pageSize >= 0 ? filter.pageSize : CONSOLE_PAGE;
+        try {
+            RosterTable.print(students, filter, out, pageSize, shown -> {
+                prompt("-- " + shown + " shown. Enter for more, q to stop: ");
+                return !nextLine().trim().equalsIgnoreCase("q");
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void loadFromFileConsole() {
+        prompt("Enter file to load (students.txt, .csv or .roster; blank for students.txt): ");
+        String file = nextLine().trim();
+        if (file.isEmpty()) {
+            file = "students.txt";
+        }
+
+        try {
+            RosterLoader.Result loaded = RosterLoader.load(Paths.get(file));
+            int added = applyLoaded(loaded);
+            out.println("Loaded " + loaded.students.size() + " students ("
+                    + added + " new) from " + file);
+        } catch (IOException e) {
+            out.println("Error loading file: " + e.getMessage());
+        }
+    }
+
+    private static void saveSnapshotConsole() {
         if (students.isEmpty()) {
-            System.out.println("No students found.");
+            out.println("No students to save.");
             return;
         }
+        try {
+            writeSnapshot();
+            out.println("Saved " + students.size() + " students to " + SNAPSHOT_FILE);
+        } catch (IOException e) {
+            out.println("Error saving snapshot: " + e.getMessage());
+        }
+    }
 
-        System.out.println("+----------------------+-----------------+-----------+");
-        System.out.printf("| %-20s | %-15s | %-9s |%n", "Student Name", "Course", "Average");
-        System.out.println("+----------------------+-----------------+-----------+");
+    private static void importGradesConsole() {
+        prompt("Enter grades CSV to import (name,course,grade[,category]): ");
+        String file = nextLine().trim();
+        if (file.isEmpty()) {
+            out.println("File name cannot be empty.");
+            return;
+        }
 
-        for (Student s : students) {
-            if (s.courses.isEmpty()) {
-                System.out.printf("| %-20s | %-15s | %-9s |%n", s.name, "No courses", "-");
-            } else {
-                for (String course : s.courses.keySet()) {
-                    double avg = s.calculateAverage(course);
-                    String letter = s.convertToLetterGrade(avg);
-                    System.out.printf("| %-20s | %-15s | %-9s |%n",
-                            s.name, course, String.format("%.2f (%s)", avg, letter));
+        try {
+            GradeImport.Report report = importCsv(Paths.get(file));
+            out.print(importSummary(report));
+        } catch (IOException e) {
+            out.println("Error importing grades: " + e.getMessage());
+        }
+    }
+
+    // An import is one undo step, however many grades it adds
+    private static GradeImport.Report importCsv(Path file) throws IOException {
+        beginStep("import " + file.getFileName());
+        try {
+            return GradeImport.runCsv(students, file);
+        } finally {
+            endStep();
+        }
+    }
+
+    private static void beginStep(String label) {
+        if (history != null) history.begin(label);
+    }
+
+    private static void endStep() {
+        if (history != null) history.end();
+    }
+
+    // "Undid: delete Ann", or the message for an empty stack
+    private static String undoText(String label, String done, String nothing) {
+        return label == null ? nothing : done + label;
+    }
+
+    // Shown after an import in both versions: totals plus the first few
+    // problems (an upload can have thousands)
+    private static final int IMPORT_ERRORS_SHOWN = 20;
+
+    private static String importSummary(GradeImport.Report report) {
+        StringBuilder text = new StringBuilder();
+        text.append("Imported ").append(report.applied).append(" of ").append(report.rows)
+                .append(" grades, ").append(report.errors.size()).append(" rejected\n");
+        int shown = Math.min(report.errors.size(), IMPORT_ERRORS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            text.append("  ").append(report.errors.get(i)).append('\n');
+        }
+        if (report.errors.size() > shown) {
+            text.append("  ... and ").append(report.errors.size() - shown).append(" more\n");
+        }
+        return text.toString();
+    }
+
+    private static synchronized RosterAnalytics analytics() {
+        if (analytics == null) {
+            analytics = RosterAnalytics.attach(students);
+        }
+        return analytics;
+    }
+
+    // Per-course statistics and the best students, as shown by both versions
+    private static String statisticsText() {
+        return RosterAnalytics.text(analytics(), TOP_SHOWN);
+    }
+
+    // "GPA 3.25 over 7.0 credit hours", as shown after an average
+    private static String gpaText(Student student) {
+        double gpa;
+        double hours;
+        synchronized (student) {
+            gpa = student.gpa();
+            hours = student.gpaHours();
+        }
+        return Double.isNaN(gpa)
+                ? "GPA: no graded courses yet"
+                : String.format("GPA %.2f over %.1f credit hours", gpa, hours);
+    }
+
+    private static void courseReportConsole() {
+        prompt("Enter course name: ");
+        String course = nextLine().trim();
+        if (course.isEmpty()) {
+            out.println("Course cannot be empty.");
+            return;
+        }
+        out.print(courseReportText(course));
+    }
+
+    // Long courses are cut off after this many students
+    private static final int COURSE_REPORT_ROWS = 1000;
+
+    // Everyone in one course with their average there. Uses the registry's
+    // course index, so it only visits students who take the course.
+    private static String courseReportText(String course) {
+        List<Student> enrolled = students.studentsIn(course);
+        if (enrolled.isEmpty()) {
+            return "No students in " + course + ".\n";
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append(course).append(": ").append(enrolled.size()).append(" students\n");
+        RosterAnalytics.CourseReport r = analytics().report(course);
+        if (r != null) {
+            text.append(String.format("Mean %.2f, median %.2f, p90 %.2f, std dev %.2f%n",
+                    r.mean, r.median, r.p90, r.stdDev));
+        }
+        text.append(String.format("%-20s %-15s%n", "Student Name", "Average (Letter)"));
+        text.append("------------------------------------\n");
+        GradingScale scale = GradingScale.forCourse(course);
+        int shown = Math.min(enrolled.size(), COURSE_REPORT_ROWS);
+        for (int i = 0; i < shown; i++) {
+            Student s = enrolled.get(i);
+            String average;
+            synchronized (s) {
+                GradeList grades = s.grades(course);
+                if (grades == null || grades.isEmpty()) {
+                    average = "-";
+                } else {
+                    double avg = CourseRules.average(course, grades);
+                    average = String.format("%.2f (%s)", avg, scale.letter(avg));
                 }
             }
+            text.append(String.format("%-20s %-15s%n", s.name, average));
         }
+        if (enrolled.size() > shown) {
+            text.append("... and ").append(enrolled.size() - shown).append(" more\n");
+        }
+        return text.toString();
+    }
 
-        System.out.println("+----------------------+-----------------+-----------+");
+    // Puts loaded students into the roster and returns how many were new.
+    // CSV rows merge into an existing student with the same name;
+    // students.txt entries are always added as their own students;
+    // a snapshot replaces the whole roster.
+    private static int applyLoaded(RosterLoader.Result loaded) {
+        return applyLoaded(loaded, null);
     }
 
-    private static Student findStudentByName(String name) {
-        for (Student student : students) {
-            if (student.name.equalsIgnoreCase(name)) {
-                return student;
+    // Same, reporting progress to task (may be null)
+    private static int applyLoaded(RosterLoader.Result loaded, BackgroundTask<?> task) {
+        beginStep(loaded.replacesRoster ? "load a snapshot" : "load " + loaded.students.size() + " students");
+        try {
+            return applyLoadedStep(loaded, task);
+        } finally {
+            endStep();
+        }
+    }
+
+    private static int applyLoadedStep(RosterLoader.Result loaded, BackgroundTask<?> task) {
+        if (loaded.replacesRoster) {
+            students.clear();
+        }
+        int added = 0;
+        int done = 0;
+        for (Student s : loaded.students) {
+            if (task != null && ++done % 1024 == 0) {
+                task.update(done, loaded.students.size());
+            }
+            Student existing = loaded.mergeByName ? students.findByName(s.name) : null;
+            if (existing == null) {
+                students.add(s);
+                added++;
+                continue;
+            }
+            for (int c = 0; c < s.courseCount(); c++) {
+                GradeList from = s.gradesAt(c);
+                String course = s.courseName(c);
+                for (int i = 0; i < from.size(); i++) {
+                    students.addGrade(existing, course, from.get(i), GradeCategories.name(from.category(i)));
+                }
             }
         }
-        return null;
+        return added;
+    }
+
+    private static Student findStudentByName(String name) {
+        return students.findByName(name);
     }
 
     // ===================== GUI VERSION =====================
@@ -226,8 +841,8 @@ public class GroupProject {
 
         // LEFT: BUTTON PANEL
         JPanel buttonPanel = new JPanel();
-        // now 8 buttons total
-        buttonPanel.setLayout(new GridLayout(8, 1, 5, 5));
+        // now 15 buttons total
+        buttonPanel.setLayout(new GridLayout(15, 1, 5, 5));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         JButton addStudentBtn = new JButton("Add Student");
@@ -236,7 +851,14 @@ public class GroupProject {
         JButton displayAllBtn = new JButton("Display All Students");
         JButton editBtn = new JButton("Edit");
         JButton deleteBtn = new JButton("Delete");
+        JButton undoBtn = new JButton("Undo");
+        JButton redoBtn = new JButton("Redo");
         JButton saveBtn = new JButton("Save to File");
+        JButton loadBtn = new JButton("Load from File");
+        JButton snapshotBtn = new JButton("Save Snapshot");
+        JButton importBtn = new JButton("Import Grades");
+        JButton statsBtn = new JButton("Class Statistics");
+        JButton courseReportBtn = new JButton("Course Report");
         JButton exitBtn = new JButton("Exit");
 
         buttonPanel.add(addStudentBtn);
@@ -245,7 +867,14 @@ public class GroupProject {
         buttonPanel.add(displayAllBtn);
         buttonPanel.add(editBtn);
         buttonPanel.add(deleteBtn);
+        buttonPanel.add(undoBtn);
+        buttonPanel.add(redoBtn);
         buttonPanel.add(saveBtn);
+        buttonPanel.add(loadBtn);
+        buttonPanel.add(snapshotBtn);
+        buttonPanel.add(importBtn);
+        buttonPanel.add(statsBtn);
+        buttonPanel.add(courseReportBtn);
         buttonPanel.add(exitBtn);
 
         frame.add(buttonPanel, BorderLayout.WEST);
@@ -257,7 +886,24 @@ public class GroupProject {
         JScrollPane scrollPane = new JScrollPane(outputArea);
         scrollPane.setBorder(BorderFactory.createTitledBorder("Output"));
 
-        frame.add(scrollPane, BorderLayout.CENTER);
+        // Output log and the roster table share the right side
+        tabs = new JTabbedPane();
+        tabs.addTab("Output", scrollPane);
+        frame.add(tabs, BorderLayout.CENTER);
+
+        // BOTTOM: PROGRESS OF THE CURRENT JOB (hidden while idle)
+        taskLabel = new JLabel();
+        taskProgress = new JProgressBar(0, 100);
+        taskProgress.setStringPainted(true);
+        cancelTaskBtn = new JButton("Cancel");
+        cancelTaskBtn.addActionListener(e -> cancelTask());
+        taskPanel = new JPanel(new BorderLayout(5, 5));
+        taskPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        taskPanel.add(taskLabel, BorderLayout.WEST);
+        taskPanel.add(taskProgress, BorderLayout.CENTER);
+        taskPanel.add(cancelTaskBtn, BorderLayout.EAST);
+        taskPanel.setVisible(false);
+        frame.add(taskPanel, BorderLayout.SOUTH);
 
         // BUTTON ACTIONS
         addStudentBtn.addActionListener(e -> addStudent());
@@ -266,9 +912,39 @@ public class GroupProject {
         displayAllBtn.addActionListener(e -> displayAllStudents());
         editBtn.addActionListener(e -> editStudentOrGrade());
         deleteBtn.addActionListener(e -> deleteStudentOrGrade());
+        undoBtn.addActionListener(e -> undo());
+        redoBtn.addActionListener(e -> redo());
+        frame.getRootPane().registerKeyboardAction(e -> undo(),
+                KeyStroke.getKeyStroke("control Z"), JComponent.WHEN_IN_FOCUSED_WINDOW);
+        frame.getRootPane().registerKeyboardAction(e -> redo(),
+                KeyStroke.getKeyStroke("control Y"), JComponent.WHEN_IN_FOCUSED_WINDOW);
         saveBtn.addActionListener(e -> saveToFile());
+        loadBtn.addActionListener(e -> loadFromFile());
+        snapshotBtn.addActionListener(e -> saveSnapshot());
+        importBtn.addActionListener(e -> importGrades());
+        statsBtn.addActionListener(e -> showStatistics());
+        courseReportBtn.addActionListener(e -> showCourseReport());
         exitBtn.addActionListener(e -> frame.dispose());
 
+        // Check every few seconds whether the journal is due for compaction
+        Timer compactionTimer = new Timer(10_000, e -> background.execute(GroupProject::compactIfDue));
+        compactionTimer.start();
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                compactionTimer.stop();
+            }
+        });
+
+        // A change the journal can no longer save still shows up (see
+        // RosterJournal.begin), whichever thread made it
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            e.printStackTrace();
+            if (e instanceof UncheckedIOException) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, e.getMessage()));
+            }
+        });
+
         frame.setVisible(true);
     }
 
@@ -277,7 +953,7 @@ public class GroupProject {
         if (name == null || name.trim().isEmpty()) {
             return;
         }
-        students.add(new Student(name.trim()));
+        students.add(name.trim());
         JOptionPane.showMessageDialog(frame, "Student added: " + name);
         outputArea.append("Added student: " + name + "\n");
     }
@@ -294,20 +970,33 @@ public class GroupProject {
         String gradeStr = JOptionPane.showInputDialog(frame, "Enter grade (0-100):");
         if (gradeStr == null) return;
 
+        int grade;
         try {
-            int grade = Integer.parseInt(gradeStr.trim());
-            if (grade < 0 || grade > 100) {
-                JOptionPane.showMessageDialog(frame, "Grade must be between 0 and 100.");
-                return;
-            }
-            student.addGrade(course.trim(), grade);
-            JOptionPane.showMessageDialog(frame,
-                    "Grade added for " + student.name + " in " + course + ": " + grade);
-            outputArea.append("Grade " + grade + " added for " + student.name
-                    + " in " + course + "\n");
+            grade = Integer.parseInt(gradeStr.trim());
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(frame, "Invalid number for grade.");
+            return;
+        }
+        if (grade < 0 || grade > 100) {
+            JOptionPane.showMessageDialog(frame, "Grade must be between 0 and 100.");
+            return;
+        }
+
+        String category = JOptionPane.showInputDialog(frame,
+                "Category (e.g. homework, exam) - leave blank for none:");
+        if (category == null) return;
+
+        try {
+            students.addGrade(student, course.trim(), grade, category);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(frame, ex.getMessage());
+            return;
         }
+        String in = category.trim().isEmpty() ? "" : " (" + category.trim() + ")";
+        JOptionPane.showMessageDialog(frame,
+                "Grade added for " + student.name + " in " + course + in + ": " + grade);
+        outputArea.append("Grade " + grade + in + " added for " + student.name
+                + " in " + course + "\n");
     }
 
     private void calculateAverage() {
@@ -320,11 +1009,11 @@ public class GroupProject {
         }
 
         double avg = student.calculateAverage(course.trim());
-        String letter = student.convertToLetterGrade(avg);
+        String letter = GradingScale.forCourse(course.trim()).letter(avg);
 
         String message = String.format(
-                "Average for %s in %s: %.2f (%s)",
-                student.name, course, avg, letter
+                "Average for %s in %s: %.2f (%s)\n%s",
+                student.name, course, avg, letter, gpaText(student)
         );
         JOptionPane.showMessageDialog(frame, message);
         outputArea.append(message + "\n");
@@ -333,67 +1022,219 @@ public class GroupProject {
     private void displayAllStudents() {
         if (students.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "No students found.");
-            outputArea.setText("");
+        }
+        if (rosterTable != null) {
+            tabs.setSelectedIndex(tabs.getTabCount() - 1);
             return;
         }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.format("%-20s %-15s %-15s%n", "Student Name", "Course", "Average (Letter)"));
-        sb.append("----------------------------------------------------------------\n");
-
-        for (Student s : students) {
-            if (s.courses.isEmpty()) {
-                sb.append(String.format("%-20s %-15s %-15s%n", s.name, "No courses", "-"));
-            } else {
-                for (String course : s.courses.keySet()) {
-                    double avg = s.calculateAverage(course);
-                    String letter = s.convertToLetterGrade(avg);
-                    sb.append(String.format("%-20s %-15s %-15s%n",
-                            s.name, course, String.format("%.2f (%s)", avg, letter)));
-                }
+        // Building the rows walks the whole roster, so do it off the EDT
+        runTask("Building roster table", "Error building roster table: ", task -> {
+            long start = RosterMetrics.start(RosterMetrics.Op.DISPLAY_ALL);
+            RosterTableModel model = new RosterTableModel(students);
+            RosterMetrics.record(RosterMetrics.Op.DISPLAY_ALL, start);
+            try {
+                task.commit();
+            } catch (RuntimeException e) {
+                model.detach();
+                throw e;
             }
-        }
+            return model;
+        }, model -> {
+            rosterTable = createRosterTable(model);
+            JScrollPane tableScroll = new JScrollPane(rosterTable);
+            tableScroll.setBorder(BorderFactory.createTitledBorder("All Students"));
+            tabs.addTab("Roster", tableScroll);
+            tabs.setSelectedIndex(tabs.getTabCount() - 1);
+        });
+    }
 
-        outputArea.setText(sb.toString());
+    // The table keeps itself up to date from then on (see RosterTableModel),
+    // so Display All Students only has to switch to it
+    private JTable createRosterTable(RosterTableModel model) {
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.setFillsViewportHeight(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(RosterTableModel.AVERAGE).setCellRenderer(
+                new javax.swing.table.DefaultTableCellRenderer() {
+                    @Override
+                    protected void setValue(Object value) {
+                        setHorizontalAlignment(RIGHT);
+                        setText(value == null ? "-" : String.format("%.2f", (Double) value));
+                    }
+                });
+
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                model.detach();
+            }
+        });
+        return table;
     }
 
     // ===== NEW: SAVE / EDIT / DELETE =====
 
-    // Save all students & grades to students.txt
     private void saveToFile() {
         if (students.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "No students to save.");
             return;
         }
 
-        try (PrintWriter out = new PrintWriter(new FileWriter("students.txt"))) {
-            for (Student s : students) {
-                out.println("Student: " + s.name);
-                if (s.courses.isEmpty()) {
-                    out.println("  No courses/grades.");
-                } else {
-                    for (Map.Entry<String, ArrayList<Integer>> entry : s.courses.entrySet()) {
-                        String course = entry.getKey();
-                        ArrayList<Integer> grades = entry.getValue();
-
-                        out.print("  " + course + ": ");
-                        for (int i = 0; i < grades.size(); i++) {
-                            out.print(grades.get(i));
-                            if (i < grades.size() - 1) {
-                                out.print(", ");
-                            }
-                        }
-                        double avg = s.calculateAverage(course);
-                        String letter = s.convertToLetterGrade(avg);
-                        out.printf(" | Average: %.2f (%s)%n", avg, letter);
-                    }
-                }
-                out.println();
-            }
+        Path target = Paths.get("students.txt");
+        runTask("Saving students.txt", "Error saving file: ", task -> {
+            List<Student> snapshot = students.all();
+            RosterExporter.export(snapshot, target, (done, total) -> {
+                // Stopping mid-export leaves the old students.txt untouched
+                task.checkCancelled();
+                task.update(done, total);
+            });
+            return snapshot.size();
+        }, saved -> {
+            outputArea.append("Saved " + saved + " students to students.txt\n");
             JOptionPane.showMessageDialog(frame, "Students saved to students.txt");
+        });
+    }
+
+    // Save the whole roster as a binary snapshot (students.roster)
+    private void saveSnapshot() {
+        if (students.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "No students to save.");
+            return;
+        }
+
+        runTask("Saving snapshot", "Error saving snapshot: ", task -> {
+            task.commit(); // quick, and the journal is compacted along with it
+            writeSnapshot();
+            return null;
+        }, ignored -> {
+            outputArea.append("Saved " + SNAPSHOT_FILE + "\n");
+            JOptionPane.showMessageDialog(frame, "Snapshot saved to " + SNAPSHOT_FILE);
+        });
+    }
+
+    // Load students.txt, a name,course,grade CSV or a .roster snapshot.
+    // Parsing can be cancelled; once students start going into the roster
+    // the load runs to the end.
+    private void loadFromFile() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setSelectedFile(new File("students.txt"));
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+
+        try {
+            if (RosterSnapshot.isSnapshot(file) && !students.isEmpty()) {
+                int answer = JOptionPane.showConfirmDialog(frame,
+                        "Loading a snapshot replaces all " + students.size()
+                                + " current students. Continue?",
+                        "Load Snapshot", JOptionPane.YES_NO_OPTION);
+                if (answer != JOptionPane.YES_OPTION) return;
+            }
         } catch (IOException ex) {
-            JOptionPane.showMessageDialog(frame, "Error saving file: " + ex.getMessage());
+            JOptionPane.showMessageDialog(frame, "Error loading file: " + ex.getMessage());
+            return;
+        }
+
+        runTask("Loading " + file.getFileName(), "Error loading file: ", task -> {
+            RosterLoader.Result loaded = RosterLoader.load(file);
+            task.commit();
+            int added = applyLoaded(loaded, task);
+            return "Loaded " + loaded.students.size() + " students ("
+                    + added + " new) from " + file.getFileName();
+        }, message -> {
+            outputArea.append(message + "\n");
+            JOptionPane.showMessageDialog(frame, message);
+        });
+    }
+
+    // Bulk upload of name,course,grade[,category] rows. Bad rows don't stop
+    // the import; they're listed in the output area afterwards.
+    private void importGrades() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+
+        runTask("Importing " + file.getFileName(), "Error importing grades: ", task -> {
+            task.commit(); // grades are applied while the file is read
+            return importCsv(file);
+        }, report -> outputArea.append(importSummary(report)));
+    }
+
+    private void showStatistics() {
+        // The first call builds the statistics with a pass over the roster
+        runTask("Computing class statistics", "Error computing statistics: ",
+                task -> statisticsText(), text -> outputArea.append(text));
+    }
+
+    private void showCourseReport() {
+        String course = chooseCourse("Select course for report:");
+        if (course == null || course.trim().isEmpty()) {
+            return;
         }
+        runTask("Building report for " + course.trim(), "Error building report: ",
+                task -> courseReportText(course.trim()), text -> outputArea.append(text));
+    }
+
+    // ===== BACKGROUND JOBS =====
+
+    // Runs a roster-wide job on the background thread with the progress bar
+    // and Cancel button showing. Only one such job runs at a time; the
+    // result is handed to onSuccess on the EDT.
+    private <T> void runTask(String description, String errorMessage,
+                             BackgroundTask.Work<T> work, java.util.function.Consumer<T> onSuccess) {
+        if (currentTask != null) {
+            JOptionPane.showMessageDialog(frame,
+                    "Please wait - " + currentTask.description + " is still running.");
+            return;
+        }
+
+        BackgroundTask<T> task = new BackgroundTask<>(description, work,
+                result -> {
+                    endTask();
+                    onSuccess.accept(result);
+                },
+                ex -> {
+                    endTask();
+                    JOptionPane.showMessageDialog(frame, errorMessage + ex.getMessage());
+                },
+                () -> {
+                    endTask();
+                    outputArea.append(description + " cancelled.\n");
+                });
+        task.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                taskProgress.setIndeterminate(false);
+                taskProgress.setValue((Integer) e.getNewValue());
+            } else if ("cancellable".equals(e.getPropertyName())) {
+                cancelTaskBtn.setEnabled(task.isCancellable());
+            }
+        });
+
+        currentTask = task;
+        taskLabel.setText(description + "...");
+        taskProgress.setValue(0);
+        taskProgress.setIndeterminate(true); // until the job reports progress
+        cancelTaskBtn.setEnabled(true);
+        taskPanel.setVisible(true);
+        outputArea.append(description + "...\n");
+        background.execute(task);
+    }
+
+    private void cancelTask() {
+        if (currentTask != null && !currentTask.requestCancel()) {
+            cancelTaskBtn.setEnabled(false);
+        }
+    }
+
+    private void endTask() {
+        currentTask = null;
+        taskProgress.setIndeterminate(false);
+        taskPanel.setVisible(false);
     }
 
     // Edit student name or a specific grade
@@ -417,7 +1258,7 @@ public class GroupProject {
             String newName = JOptionPane.showInputDialog(frame, "Enter new name:", student.name);
             if (newName != null && !newName.trim().isEmpty()) {
                 String oldName = student.name;
-                student.name = newName.trim();
+                students.rename(student, newName.trim());
                 JOptionPane.showMessageDialog(frame, "Renamed " + oldName + " to " + student.name);
                 outputArea.append("Renamed " + oldName + " to " + student.name + "\n");
             }
@@ -428,12 +1269,12 @@ public class GroupProject {
     }
 
     private void editGrade(Student student) {
-        if (student.courses.isEmpty()) {
+        if (!student.hasCourses()) {
             JOptionPane.showMessageDialog(frame, "This student has no courses/grades.");
             return;
         }
 
-        String[] courseNames = student.courses.keySet().toArray(new String[0]);
+        String[] courseNames = student.courseNames();
         String course = (String) JOptionPane.showInputDialog(
                 frame,
                 "Choose course to edit:",
@@ -445,15 +1286,17 @@ public class GroupProject {
         );
         if (course == null) return;
 
-        ArrayList<Integer> grades = student.courses.get(course);
+        GradeList grades = student.grades(course);
         if (grades == null || grades.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "No grades in this course.");
             return;
         }
 
         StringBuilder sb = new StringBuilder("Current grades for " + course + ":\n");
-        for (int i = 0; i < grades.size(); i++) {
-            sb.append(i).append(": ").append(grades.get(i)).append("\n");
+        synchronized (student) {
+            for (int i = 0; i < grades.size(); i++) {
+                sb.append(i).append(": ").append(grades.get(i)).append("\n");
+            }
         }
 
         String indexStr = JOptionPane.showInputDialog(
@@ -478,8 +1321,7 @@ public class GroupProject {
                 return;
             }
 
-            int oldGrade = grades.get(index);
-            grades.set(index, newGrade);
+            int oldGrade = students.editGrade(student, course, index, newGrade);
             JOptionPane.showMessageDialog(
                     frame,
                     "Changed grade " + oldGrade + " to " + newGrade +
@@ -519,11 +1361,11 @@ public class GroupProject {
             JOptionPane.showMessageDialog(frame, "Deleted student: " + student.name);
             outputArea.append("Deleted student: " + student.name + "\n");
         } else if (choice == 1) { // Delete course
-            if (student.courses.isEmpty()) {
+            if (!student.hasCourses()) {
                 JOptionPane.showMessageDialog(frame, "This student has no courses.");
                 return;
             }
-            String[] courseNames = student.courses.keySet().toArray(new String[0]);
+            String[] courseNames = student.courseNames();
             String course = (String) JOptionPane.showInputDialog(
                     frame,
                     "Choose course to delete:",
@@ -534,18 +1376,18 @@ public class GroupProject {
                     courseNames[0]
             );
             if (course != null) {
-                student.courses.remove(course);
+                students.removeCourse(student, course);
                 JOptionPane.showMessageDialog(frame, "Deleted course " + course +
                         " for " + student.name);
                 outputArea.append("Deleted course " + course + " for " + student.name + "\n");
             }
         } else if (choice == 2) { // Delete grade
-            if (student.courses.isEmpty()) {
+            if (!student.hasCourses()) {
                 JOptionPane.showMessageDialog(frame, "This student has no courses.");
                 return;
             }
 
-            String[] courseNames = student.courses.keySet().toArray(new String[0]);
+            String[] courseNames = student.courseNames();
             String course = (String) JOptionPane.showInputDialog(
                     frame,
                     "Choose course:",
@@ -557,15 +1399,17 @@ public class GroupProject {
             );
             if (course == null) return;
 
-            ArrayList<Integer> grades = student.courses.get(course);
+            GradeList grades = student.grades(course);
             if (grades == null || grades.isEmpty()) {
                 JOptionPane.showMessageDialog(frame, "No grades in this course.");
                 return;
             }
 
             StringBuilder sb = new StringBuilder("Current grades for " + course + ":\n");
-            for (int i = 0; i < grades.size(); i++) {
-                sb.append(i).append(": ").append(grades.get(i)).append("\n");
+            synchronized (student) {
+                for (int i = 0; i < grades.size(); i++) {
+                    sb.append(i).append(": ").append(grades.get(i)).append("\n");
+                }
             }
 
             String indexStr = JOptionPane.showInputDialog(
@@ -580,7 +1424,7 @@ public class GroupProject {
                     JOptionPane.showMessageDialog(frame, "Index out of range.");
                     return;
                 }
-                int removed = grades.remove(index);
+                int removed = students.removeGrade(student, course, index);
                 JOptionPane.showMessageDialog(frame, "Deleted grade " + removed +
                         " from " + course + " for " + student.name);
                 outputArea.append("Deleted grade " + removed + " from " + course +
@@ -592,6 +1436,24 @@ public class GroupProject {
         // Cancel -> do nothing
     }
 
+    // ===== UNDO / REDO =====
+
+    // Undoing a file load puts back every student it touched, so both run
+    // off the EDT like the load itself
+    private void undo() {
+        runTask("Undoing", "Error undoing: ", task -> {
+            task.commit();
+            return history.undo();
+        }, label -> outputArea.append(undoText(label, "Undid: ", "Nothing to undo.") + "\n"));
+    }
+
+    private void redo() {
+        runTask("Redoing", "Error redoing: ", task -> {
+            task.commit();
+            return history.redo();
+        }, label -> outputArea.append(undoText(label, "Redid: ", "Nothing to redo.") + "\n"));
+    }
+
     // ===== GUI HELPERS =====
 
     private Student chooseStudent() {
@@ -600,28 +1462,9 @@ public class GroupProject {
             return null;
         }
 
-        String[] names = students.stream().map(s -> s.name).toArray(String[]::new);
-
-        String selectedName = (String) JOptionPane.showInputDialog(
-                frame,
-                "Select a student:",
-                "Choose Student",
-                JOptionPane.PLAIN_MESSAGE,
-                null,
-                names,
-                names[0]
-        );
-
-        if (selectedName == null) {
-            return null;
-        }
-
-        for (Student s : students) {
-            if (s.name.equals(selectedName)) {
-                return s;
-            }
-        }
-        return null;
+        // Type-ahead over the registry's name index; hands back the Student
+        // itself, so there's no name-to-student scan afterwards
+        return StudentPicker.pick(frame, students, "Select a student:");
     }
 
     // Course dropdown with "Other..."
@@ -0,0 +1,97 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency histogram in the HDR style: buckets are powers of two split into
+// SUB_BUCKETS linear steps, so any value from 1 ns to hours lands in a
+// bucket at most 1/SUB_BUCKETS (6%) wide. The buckets are a fixed array of
+// counters, so record() is a few shifts and one atomic increment - no
+// allocation and no lock, safe from any number of threads.
+//
+// Readers take a Snapshot. It's not atomic against concurrent record()s,
+// but every count in it was really recorded.
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values below SUB_BUCKETS get a bucket each; every power of two above
+    // that gets SUB_BUCKETS of them, up to the one holding Long.MAX_VALUE
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    static final class Snapshot {
+        final long count;
+        final double mean;
+        final long p50;
+        final long p90;
+        final long p99;
+        final long p999;
+        final long max;
+
+        private Snapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        totalNanos.addAndGet(nanos);
+        // Read first: after warm-up a new maximum is rare, so this is
+        // almost never a write
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    // Percentiles are the top of their bucket (never above the real max)
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long max = maxNanos.get();
+        if (count == 0) return new Snapshot(0, 0, 0, 0, 0, 0, 0);
+        return new Snapshot(count, totalNanos.get() / (double) count,
+                percentile(copy, count, 0.50, max), percentile(copy, count, 0.90, max),
+                percentile(copy, count, 0.99, max), percentile(copy, count, 0.999, max), max);
+    }
+
+    private static long percentile(long[] counts, long total, double fraction, long max) {
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestIn(i), max);
+        }
+        return max;
+    }
+
+    // ===== BUCKETS =====
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls in the bucket
+    static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
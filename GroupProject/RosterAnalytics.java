@@ -0,0 +1,704 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Class-wide statistics over students' course averages: per course the
+// mean, standard deviation, median, 90th percentile and a letter-grade
+// histogram (on the course's GradingScale), plus top-N rankings per course
+// and across the roster (by the mean of a student's course averages, or by
+// GPA). Course averages are CourseRules averages, so weighted courses count
+// their weighted average.
+//
+// attach() builds everything in one parallel pass over the roster, then
+// follows every grade change as a RosterListener, so reports never rescan:
+//  - mean/std dev come from running sums
+//  - median/p90 from a histogram of averages in hundredths (averages
+//    outside 0-100 count in the end bins)
+//  - rankings (per course, overall and by GPA) are computed on first
+//    request (one parallel pass) and kept until a change could alter them:
+//    the student is already ranked, or now beats the lowest ranked score,
+//    or the course rules (weights, credits, points) are reconfigured
+class RosterAnalytics implements RosterListener, ClassStatistics {
+
+    // Rankings keep this many places; bigger requests are computed fresh
+    static final int RANK_DEPTH = 100;
+
+    private static final int BINS = 100 * 100 + 1; // 0.00 .. 100.00
+
+    static final class Ranked {
+        final Student student;
+        final double average;
+
+        Ranked(Student student, double average) {
+            this.student = student;
+            this.average = average;
+        }
+    }
+
+    static final class CourseReport {
+        final String course;
+        final int students;
+        final double mean;
+        final double stdDev;
+        final double median;
+        final double p90;
+        final Map<String, Integer> letters; // letter -> students, best first
+
+        CourseReport(String course, int students, double mean, double stdDev,
+                     double median, double p90, Map<String, Integer> letters) {
+            this.course = course;
+            this.students = students;
+            this.mean = mean;
+            this.stdDev = stdDev;
+            this.median = median;
+            this.p90 = p90;
+            this.letters = letters;
+        }
+    }
+
+    // Best first; equal averages in ID order
+    private static final Comparator<Ranked> RANK_ORDER =
+            Comparator.<Ranked>comparingDouble(r -> -r.average).thenComparingInt(r -> r.student.id());
+
+    private final StudentRegistry registry;
+
+    // Course ID -> stats; each CourseStats is its own lock
+    private final Map<Integer, CourseStats> courses = new ConcurrentHashMap<>();
+
+    private volatile Ranking overallTop;
+    private final AtomicLong overallVersion = new AtomicLong();
+    private volatile Ranking gpaTop;
+    private final AtomicLong gpaVersion = new AtomicLong();
+
+    private RosterAnalytics(StudentRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Builds the statistics and starts following the roster. Changes are
+    // paused for the length of the initial pass.
+    static RosterAnalytics attach(StudentRegistry registry) {
+        RosterAnalytics analytics = new RosterAnalytics(registry);
+        registry.lockExclusive();
+        try {
+            Map<Integer, CourseStats> built = registry.all().parallelStream()
+                    .collect(() -> new TreeMap<Integer, CourseStats>(),
+                            RosterAnalytics::addStudent,
+                            RosterAnalytics::mergeAll);
+            analytics.courses.putAll(built);
+            registry.addListener(analytics);
+        } finally {
+            registry.unlockExclusive();
+        }
+        return analytics;
+    }
+
+    void detach() {
+        registry.removeListener(this);
+    }
+
+    // ===== QUERIES =====
+
+    // Courses at least one student has a grade in, by name. (Not by course
+    // ID: that's the order this process first saw them in, which a reload
+    // or a sharded roster doesn't keep.)
+    @Override
+    public List<String> courses() {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<Integer, CourseStats> e : courses.entrySet()) {
+            synchronized (e.getValue()) {
+                if (e.getValue().count > 0) names.add(CourseNames.name(e.getKey()));
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    // Null if nobody has a grade in the course
+    @Override
+    public CourseReport report(String course) {
+        CourseStats stats = courses.get(CourseNames.find(course));
+        if (stats == null) return null;
+        synchronized (stats) {
+            return stats.report(course);
+        }
+    }
+
+    // The n best students in one course by their average there
+    @Override
+    public List<Ranked> top(String course, int n) {
+        int courseId = CourseNames.find(course);
+        CourseStats stats = courses.get(courseId);
+        if (stats == null) return Collections.emptyList();
+        if (n > RANK_DEPTH) return computeTop(courseId, n).entries;
+
+        Ranking cached = stats.top;
+        if (cached == null || cached.stale()) {
+            long version;
+            synchronized (stats) {
+                version = stats.version;
+            }
+            cached = computeTop(courseId, RANK_DEPTH);
+            synchronized (stats) {
+                // Only keep it if nothing changed while we were counting
+                if (stats.version == version) stats.top = cached;
+            }
+        }
+        return head(cached.entries, n);
+    }
+
+    // The n best students overall, by the mean of their course averages
+    @Override
+    public List<Ranked> topOverall(int n) {
+        if (n > RANK_DEPTH) return computeTop(-1, n).entries;
+
+        Ranking cached = overallTop;
+        if (cached == null || cached.stale()) {
+            long version = overallVersion.get();
+            cached = computeTop(-1, RANK_DEPTH);
+            synchronized (this) {
+                if (overallVersion.get() == version) overallTop = cached;
+            }
+        }
+        return head(cached.entries, n);
+    }
+
+    // The n best students by GPA (Ranked.average holds the GPA)
+    @Override
+    public List<Ranked> topGpa(int n) {
+        if (n > RANK_DEPTH) return computeGpaTop(n).entries;
+
+        Ranking cached = gpaTop;
+        if (cached == null || cached.stale()) {
+            long version = gpaVersion.get();
+            cached = computeGpaTop(RANK_DEPTH);
+            synchronized (this) {
+                if (gpaVersion.get() == version) gpaTop = cached;
+            }
+        }
+        return head(cached.entries, n);
+    }
+
+    private static List<Ranked> head(List<Ranked> entries, int n) {
+        return entries.size() <= n ? entries : entries.subList(0, n);
+    }
+
+    // One parallel pass keeping the best `depth` students; courseId -1 ranks
+    // by overall average. A course ranking only visits that course's students.
+    private Ranking computeTop(int courseId, int depth) {
+        long rules = CourseRules.generation();
+        List<Student> pool = courseId < 0
+                ? registry.all()
+                : registry.studentsIn(CourseNames.name(courseId));
+        TopN best = pool.parallelStream().collect(
+                () -> new TopN(depth),
+                (top, s) -> {
+                    double score;
+                    synchronized (s) {
+                        score = courseId < 0 ? overallAverage(s) : courseAverage(s, courseId);
+                    }
+                    if (!Double.isNaN(score)) top.offer(new Ranked(s, score));
+                },
+                TopN::merge);
+        return new Ranking(best.sorted(), depth, rules);
+    }
+
+    private Ranking computeGpaTop(int depth) {
+        long rules = CourseRules.generation();
+        TopN best = registry.all().parallelStream().collect(
+                () -> new TopN(depth),
+                (top, s) -> {
+                    double gpa;
+                    synchronized (s) {
+                        gpa = CourseRules.gpa(s);
+                    }
+                    if (!Double.isNaN(gpa)) top.offer(new Ranked(s, gpa));
+                },
+                TopN::merge);
+        return new Ranking(best.sorted(), depth, rules);
+    }
+
+    // ===== REPORT TEXT =====
+
+    // Per-course statistics and the best `shown` students, as the console,
+    // the GUI and the HTTP server show them
+    static String text(ClassStatistics stats, int shown) {
+        StringBuilder text = new StringBuilder();
+        List<String> courses = stats.courses();
+        if (courses.isEmpty()) {
+            return "No grades recorded yet.\n";
+        }
+
+        for (String course : courses) {
+            CourseReport r = stats.report(course);
+            if (r == null) continue; // last grade removed meanwhile
+            text.append(String.format("%s: %d students, mean %.2f, median %.2f, p90 %.2f, std dev %.2f%n",
+                    course, r.students, r.mean, r.median, r.p90, r.stdDev));
+            text.append("  Letters:");
+            r.letters.forEach((letter, n) -> text.append(' ').append(letter).append('=').append(n));
+            text.append('\n');
+            appendRanking(text, "  Top " + shown + ":", stats.top(course, shown));
+        }
+        appendRanking(text, "Top " + shown + " overall:", stats.topOverall(shown));
+        appendRanking(text, "Top " + shown + " by GPA:", stats.topGpa(shown));
+        return text.toString();
+    }
+
+    private static void appendRanking(StringBuilder text, String title, List<Ranked> ranked) {
+        text.append(title);
+        for (Ranked r : ranked) {
+            text.append(String.format(" %s (%.2f)", r.student.name, r.average));
+        }
+        text.append('\n');
+    }
+
+    // ===== SHARDS =====
+    // A shard sends its statistics to the router as lines of tab-separated
+    // fields (see TabFields.field):
+    //   course <name> <count> <sum> <sum of squares>
+    //   bins <hundredths>:<students> ...     the non-empty bins only
+    //   letters <letter>=<students> ...
+    //   top <id> <name> <average>            the course's best n
+    //   overall|gpa <id> <name> <score>      the roster's best n
+    // Counts, sums and bins add up across shards, so the merged mean, std
+    // dev, median and p90 are what a single roster would give; and every
+    // student in the best n of the whole roster is in their shard's best n.
+
+    void writeSummary(Writer out, int n) throws IOException {
+        for (Map.Entry<Integer, CourseStats> e : new TreeMap<>(courses).entrySet()) {
+            String course = CourseNames.name(e.getKey());
+            CourseStats stats = e.getValue();
+            StringBuilder lines = new StringBuilder(256);
+            synchronized (stats) {
+                if (stats.count == 0) continue;
+                lines.append("course\t").append(TabFields.field(course))
+                        .append('\t').append(stats.count)
+                        .append('\t').append(stats.sum)
+                        .append('\t').append(stats.sumOfSquares)
+                        .append("\nbins\t");
+                String separator = "";
+                for (int i = 0; i < BINS; i++) {
+                    if (stats.bins[i] == 0) continue;
+                    lines.append(separator).append(i).append(':').append(stats.bins[i]);
+                    separator = " ";
+                }
+                lines.append("\nletters\t");
+                separator = "";
+                for (Map.Entry<String, Integer> letter : stats.letters.entrySet()) {
+                    if (letter.getValue() == 0) continue;
+                    lines.append(separator).append(letter.getKey()).append('=').append(letter.getValue());
+                    separator = " ";
+                }
+                lines.append('\n');
+            }
+            out.write(lines.toString());
+            for (Ranked r : top(course, n)) writeRanked(out, "top", r);
+        }
+        for (Ranked r : topOverall(n)) writeRanked(out, "overall", r);
+        for (Ranked r : topGpa(n)) writeRanked(out, "gpa", r);
+    }
+
+    private static void writeRanked(Writer out, String kind, Ranked r) throws IOException {
+        out.write(kind + '\t' + r.student.id() + '\t' + TabFields.field(r.student.name) + '\t' + r.average + '\n');
+    }
+
+    // The statistics of a sharded roster, added up from every shard's
+    // writeSummary(). Rankings go `depth` deep. Courses are listed by name,
+    // as RosterAnalytics.courses() lists them.
+    static final class Summary implements ClassStatistics {
+        private final int depth;
+        private final Map<String, CourseStats> courses = new TreeMap<>();
+        private final Map<String, TopN> top = new HashMap<>();
+        private final TopN overall;
+        private final TopN gpa;
+
+        Summary(int depth) {
+            this.depth = depth;
+            this.overall = new TopN(depth);
+            this.gpa = new TopN(depth);
+        }
+
+        // Adds one shard's summary
+        void read(BufferedReader in) throws IOException {
+            CourseStats stats = null;
+            String course = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = TabFields.fields(line);
+                switch (f[0]) {
+                    case "course":
+                        course = f[1];
+                        stats = courses.computeIfAbsent(course, c -> new CourseStats());
+                        stats.count += Integer.parseInt(f[2]);
+                        stats.sum += Double.parseDouble(f[3]);
+                        stats.sumOfSquares += Double.parseDouble(f[4]);
+                        break;
+                    case "bins":
+                        for (String bin : f[1].split(" ")) {
+                            if (bin.isEmpty()) continue;
+                            int colon = bin.indexOf(':');
+                            stats.bins[Integer.parseInt(bin.substring(0, colon))]
+                                    += Integer.parseInt(bin.substring(colon + 1));
+                        }
+                        break;
+                    case "letters":
+                        for (String letter : f[1].split(" ")) {
+                            int eq = letter.lastIndexOf('=');
+                            if (eq <= 0) continue;
+                            stats.letters.merge(letter.substring(0, eq),
+                                    Integer.parseInt(letter.substring(eq + 1)), Integer::sum);
+                        }
+                        break;
+                    case "top":
+                        top.computeIfAbsent(course, c -> new TopN(depth)).offer(ranked(f));
+                        break;
+                    case "overall":
+                        overall.offer(ranked(f));
+                        break;
+                    case "gpa":
+                        gpa.offer(ranked(f));
+                        break;
+                    default:
+                        throw new IOException("Unexpected statistics line: " + f[0]);
+                }
+            }
+        }
+
+        // The student lives in another process; this one only carries the
+        // ID and name for the report
+        private static Ranked ranked(String[] f) {
+            return new Ranked(new Student(f[2], Integer.parseInt(f[1])), Double.parseDouble(f[3]));
+        }
+
+        @Override
+        public List<String> courses() {
+            return new ArrayList<>(courses.keySet());
+        }
+
+        @Override
+        public CourseReport report(String course) {
+            CourseStats stats = courses.get(course);
+            return stats == null ? null : stats.report(course);
+        }
+
+        @Override
+        public List<Ranked> top(String course, int n) {
+            TopN best = top.get(course);
+            return best == null ? Collections.emptyList() : head(best.sorted(), n);
+        }
+
+        @Override
+        public List<Ranked> topOverall(int n) {
+            return head(overall.sorted(), n);
+        }
+
+        @Override
+        public List<Ranked> topGpa(int n) {
+            return head(gpa.sorted(), n);
+        }
+    }
+
+    // ===== ROSTER CHANGES =====
+    // Each one moves a single student's average in one course from `before`
+    // to `after` (NaN = not counted: no grades in that course).
+
+    @Override
+    public void studentAdded(Student student) {
+        synchronized (student) {
+            for (int c = 0; c < student.courseCount(); c++) {
+                GradeList grades = student.gradesAt(c);
+                if (!grades.isEmpty()) {
+                    moved(student, student.courseId(c), Double.NaN,
+                            CourseRules.average(student.courseName(c), grades));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void studentRemoved(Student student) {
+        // Removed students keep their grades, so their averages are still there
+        synchronized (student) {
+            for (int c = 0; c < student.courseCount(); c++) {
+                GradeList grades = student.gradesAt(c);
+                if (!grades.isEmpty()) {
+                    moved(student, student.courseId(c),
+                            CourseRules.average(student.courseName(c), grades), Double.NaN);
+                }
+            }
+        }
+        overallChanged(student, true);
+        gpaChanged(student, true);
+    }
+
+    @Override
+    public void rosterCleared(List<Student> removed) {
+        for (CourseStats stats : courses.values()) {
+            synchronized (stats) {
+                stats.clear();
+            }
+        }
+        overallChanged(null, true);
+        gpaChanged(null, true);
+    }
+
+    @Override
+    public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+        GradeList grades = student.grades(course);
+        double before = CourseRules.averageAdjusted(course, grades, GradeCategories.intern(category), -grade, -1);
+        moved(student, CourseNames.find(course), before, CourseRules.average(course, grades));
+    }
+
+    @Override
+    public void gradeEdited(Student student, String course, int index, int oldGrade, int newGrade) {
+        GradeList grades = student.grades(course);
+        double before = CourseRules.averageAdjusted(course, grades, grades.category(index), oldGrade - newGrade, 0);
+        moved(student, CourseNames.find(course), before, CourseRules.average(course, grades));
+    }
+
+    @Override
+    public void gradeRemoved(Student student, String course, int index, int oldGrade, String category) {
+        GradeList grades = student.grades(course);
+        double before = CourseRules.averageAdjusted(course, grades, GradeCategories.intern(category), oldGrade, 1);
+        moved(student, CourseNames.find(course), before,
+                grades.isEmpty() ? Double.NaN : CourseRules.average(course, grades));
+    }
+
+    @Override
+    public void courseRemoved(Student student, String course, int slot, GradeList grades) {
+        if (!grades.isEmpty()) {
+            moved(student, CourseNames.find(course), CourseRules.average(course, grades), Double.NaN);
+        }
+    }
+
+    // Called with the student's lock held (see StudentRegistry)
+    private void moved(Student student, int courseId, double before, double after) {
+        CourseStats stats = courses.computeIfAbsent(courseId, id -> new CourseStats());
+        GradingScale scale = GradingScale.forCourse(CourseNames.name(courseId));
+        synchronized (stats) {
+            if (!Double.isNaN(before)) stats.remove(before, scale.letter(before));
+            if (!Double.isNaN(after)) stats.add(after, scale.letter(after));
+            stats.version++;
+            Ranking top = stats.top;
+            if (top != null && (top.members.containsKey(student) || after >= top.threshold)) {
+                stats.top = null;
+            }
+        }
+        overallChanged(student, false);
+        gpaChanged(student, false);
+    }
+
+    private void overallChanged(Student student, boolean removed) {
+        overallVersion.incrementAndGet();
+        Ranking top = overallTop;
+        if (top == null) return;
+        if (student == null || top.members.containsKey(student)
+                || (!removed && overallAverage(student) >= top.threshold)) {
+            synchronized (this) {
+                overallTop = null;
+            }
+        }
+    }
+
+    // Caller holds the student's lock unless `removed`
+    private void gpaChanged(Student student, boolean removed) {
+        gpaVersion.incrementAndGet();
+        Ranking top = gpaTop;
+        if (top == null) return;
+        if (student == null || top.members.containsKey(student)
+                || (!removed && CourseRules.gpa(student) >= top.threshold)) {
+            synchronized (this) {
+                gpaTop = null;
+            }
+        }
+    }
+
+    // ===== HELPERS =====
+
+    // Caller holds the student's lock
+    private static double courseAverage(Student s, int courseId) {
+        for (int c = 0; c < s.courseCount(); c++) {
+            if (s.courseId(c) == courseId) {
+                GradeList grades = s.gradesAt(c);
+                return grades.isEmpty() ? Double.NaN : CourseRules.average(s.courseName(c), grades);
+            }
+        }
+        return Double.NaN;
+    }
+
+    // Mean of the student's course averages; caller holds the student's lock
+    private static double overallAverage(Student s) {
+        double sum = 0;
+        int counted = 0;
+        for (int c = 0; c < s.courseCount(); c++) {
+            GradeList grades = s.gradesAt(c);
+            if (!grades.isEmpty()) {
+                sum += CourseRules.average(s.courseName(c), grades);
+                counted++;
+            }
+        }
+        return counted == 0 ? Double.NaN : sum / counted;
+    }
+
+    private static void addStudent(Map<Integer, CourseStats> into, Student s) {
+        synchronized (s) {
+            for (int c = 0; c < s.courseCount(); c++) {
+                GradeList grades = s.gradesAt(c);
+                if (!grades.isEmpty()) {
+                    double average = CourseRules.average(s.courseName(c), grades);
+                    into.computeIfAbsent(s.courseId(c), id -> new CourseStats())
+                            .add(average, GradingScale.forCourse(s.courseName(c)).letter(average));
+                }
+            }
+        }
+    }
+
+    private static void mergeAll(Map<Integer, CourseStats> into, Map<Integer, CourseStats> from) {
+        from.forEach((id, stats) -> into.merge(id, stats, CourseStats::merge));
+    }
+
+    // Running totals for one course. Guarded by its own monitor once shared.
+    private static final class CourseStats {
+        int count;
+        double sum;
+        double sumOfSquares;
+        final int[] bins = new int[BINS];
+        final Map<String, Integer> letters = new TreeMap<>();
+        long version;  // bumped on every change, see top()
+        volatile Ranking top; // cached ranking or null
+
+        void add(double average, String letter) {
+            count++;
+            sum += average;
+            sumOfSquares += average * average;
+            bins[bin(average)]++;
+            letters.merge(letter, 1, Integer::sum);
+        }
+
+        void remove(double average, String letter) {
+            count--;
+            sum -= average;
+            sumOfSquares -= average * average;
+            bins[bin(average)]--;
+            letters.merge(letter, -1, Integer::sum);
+            if (count == 0) {
+                // Start from exact zeros again rather than rounding leftovers
+                sum = 0;
+                sumOfSquares = 0;
+            }
+        }
+
+        void clear() {
+            count = 0;
+            sum = 0;
+            sumOfSquares = 0;
+            Arrays.fill(bins, 0);
+            letters.clear();
+            version++;
+            top = null;
+        }
+
+        CourseStats merge(CourseStats other) {
+            count += other.count;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            for (int i = 0; i < BINS; i++) bins[i] += other.bins[i];
+            other.letters.forEach((letter, n) -> letters.merge(letter, n, Integer::sum));
+            return this;
+        }
+
+        // Caller holds the lock if it's shared
+        CourseReport report(String course) {
+            if (count == 0) return null;
+            double mean = sum / count;
+            double variance = Math.max(0.0, sumOfSquares / count - mean * mean);
+            Map<String, Integer> byLetter = new LinkedHashMap<>();
+            for (String letter : GradingScale.forCourse(course).letters()) {
+                int n = letters.getOrDefault(letter, 0);
+                if (n > 0) byLetter.put(letter, n);
+            }
+            return new CourseReport(course, count, mean, Math.sqrt(variance),
+                    percentile(0.5), percentile(0.9), byLetter);
+        }
+
+        // Nearest-rank percentile, to the hundredth
+        double percentile(double p) {
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long seen = 0;
+            for (int i = 0; i < BINS; i++) {
+                seen += bins[i];
+                if (seen >= rank) return i / 100.0;
+            }
+            return 100.0;
+        }
+
+        private static int bin(double average) {
+            long hundredths = Math.round(average * 100);
+            return (int) Math.max(0, Math.min(BINS - 1, hundredths));
+        }
+    }
+
+    private static final class Ranking {
+        final List<Ranked> entries;
+        final Map<Student, Boolean> members = new IdentityHashMap<>();
+        // A student averaging at least this could enter the ranking
+        final double threshold;
+        final long rules; // CourseRules.generation() it was computed under
+
+        Ranking(List<Ranked> entries, int depth, long rules) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.rules = rules;
+            for (Ranked r : entries) members.put(r.student, Boolean.TRUE);
+            this.threshold = entries.size() < depth
+                    ? Double.NEGATIVE_INFINITY
+                    : entries.get(entries.size() - 1).average;
+        }
+
+        // Weights, credits or grade points changed since
+        boolean stale() {
+            return rules != CourseRules.generation();
+        }
+    }
+
+    // Keeps the best `limit` entries seen; the worst kept one is on top
+    private static final class TopN {
+        final int limit;
+        final PriorityQueue<Ranked> heap;
+
+        TopN(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(RANK_ORDER.reversed());
+        }
+
+        void offer(Ranked r) {
+            if (heap.size() < limit) {
+                heap.add(r);
+            } else if (RANK_ORDER.compare(r, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(r);
+            }
+        }
+
+        void merge(TopN other) {
+            for (Ranked r : other.heap) offer(r);
+        }
+
+        List<Ranked> sorted() {
+            List<Ranked> out = new ArrayList<>(heap);
+            out.sort(RANK_ORDER);
+            return out;
+        }
+    }
+}
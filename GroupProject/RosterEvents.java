@@ -0,0 +1,412 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Change data capture: every roster change as an Event, for subscribers in
+// this process (report cards, notifications, a warehouse feed) that want
+// what changed rather than a fresh students.txt. Subscribe with
+//
+//   RosterEvents.Subscription s = events.subscribe("warehouse", batch -> ...);
+//
+// and each subscriber's own thread gets the events in order, in batches of
+// whatever has piled up since the last one (up to MAX_BATCH). A student who
+// joins with grades (a load, an undone delete) comes as STUDENT_ADDED plus
+// a GRADE_ADDED per grade, so the events alone are enough to follow along.
+//
+// The events go through a fixed ring of reusable Event slots, so publishing
+// allocates nothing and takes no lock: the thread making the change claims
+// a sequence number with one atomic increment, fills in the slot and marks
+// it published. A slot is reused only once every subscriber is past it.
+// When the slowest subscriber is a whole ring behind, changes wait for it
+// (backpressure) - so a subscriber has to keep up, or be closed, and must
+// not wait on the roster itself (e.g. synchronized on a student): the
+// change that is waiting for it may hold that lock.
+//
+// With nobody subscribed, publishing never waits. Sequence numbers start at
+// 0 every run.
+final class RosterEvents implements RosterListener {
+
+    static final int DEFAULT_CAPACITY = 1 << 14; // a power of two
+    static final int MAX_BATCH = 256;
+
+    private static final int SPINS = 100;
+    private static final long MAX_IDLE_NANOS = 1_000_000;
+
+    enum Kind {
+        STUDENT_ADDED, STUDENT_RENAMED, STUDENT_REMOVED, ROSTER_CLEARED,
+        COURSE_ADDED, COURSE_REMOVED, GRADE_ADDED, GRADE_EDITED, GRADE_REMOVED
+    }
+
+    // One change. Slots are reused, so an Event is only valid during the
+    // onEvents() call that hands it over: copy out whatever is kept.
+    static final class Event {
+        long sequence;
+        Kind kind;
+        int studentId;   // 0 for ROSTER_CLEARED
+        String name;     // the student's name (the new one for a rename)
+        String oldName;  // STUDENT_RENAMED
+        String course;   // course and grade events
+        int index;       // grade events: where in the course's grades
+        int grade;       // GRADE_ADDED, GRADE_EDITED (the new grade)
+        int oldGrade;    // GRADE_EDITED, GRADE_REMOVED
+        String category; // GRADE_ADDED, GRADE_REMOVED; "" for none
+
+        // One tab-separated line: sequence, kind, student ID, then the
+        // fields that kind has
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder(64).append(sequence).append('\t').append(kind)
+                    .append('\t').append(studentId);
+            switch (kind) {
+                case STUDENT_ADDED:
+                case STUDENT_REMOVED:
+                    line.append('\t').append(TabFields.field(name));
+                    break;
+                case STUDENT_RENAMED:
+                    line.append('\t').append(TabFields.field(name)).append('\t').append(TabFields.field(oldName));
+                    break;
+                case COURSE_ADDED:
+                case COURSE_REMOVED:
+                    line.append('\t').append(TabFields.field(course));
+                    break;
+                case GRADE_ADDED:
+                    line.append('\t').append(TabFields.field(course)).append('\t').append(index)
+                            .append('\t').append(grade).append('\t').append(TabFields.field(category));
+                    break;
+                case GRADE_EDITED:
+                    line.append('\t').append(TabFields.field(course)).append('\t').append(index)
+                            .append('\t').append(grade).append('\t').append(oldGrade);
+                    break;
+                case GRADE_REMOVED:
+                    line.append('\t').append(TabFields.field(course)).append('\t').append(index)
+                            .append('\t').append(oldGrade).append('\t').append(TabFields.field(category));
+                    break;
+                default:
+                    break;
+            }
+            return line.toString();
+        }
+    }
+
+    // Called on the subscription's thread. An exception is reported and the
+    // batch counts as delivered.
+    interface Subscriber {
+        void onEvents(List<Event> batch) throws Exception;
+
+        // After the last batch, once the subscription is closed
+        default void onClose() throws Exception {
+        }
+    }
+
+    private final StudentRegistry registry;
+    private final Event[] ring;
+    private final int mask;
+    private final AtomicLongArray published;               // slot -> sequence last published in it
+    private final AtomicLong claimed = new AtomicLong(-1); // last sequence handed out
+    private final AtomicLong slowestSeen = new AtomicLong(-1);
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    private RosterEvents(StudentRegistry registry, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.registry = registry;
+        ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) ring[i] = new Event();
+        mask = capacity - 1;
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+    }
+
+    // Publishes every change from now on
+    static RosterEvents attach(StudentRegistry registry) {
+        return attach(registry, DEFAULT_CAPACITY);
+    }
+
+    static RosterEvents attach(StudentRegistry registry, int capacity) {
+        RosterEvents events = new RosterEvents(registry, capacity);
+        registry.addListener(events);
+        return events;
+    }
+
+    // Closes every subscription after it has had what was published so far
+    void detach() {
+        registry.removeListener(this);
+        for (Subscription s : subscriptions) s.close();
+    }
+
+    // ===== SUBSCRIBING =====
+
+    // Delivers the events published from now on
+    synchronized Subscription subscribe(String name, Subscriber subscriber) {
+        Subscription s = new Subscription(name, subscriber, claimed.get());
+        Subscription[] current = subscriptions;
+        Subscription[] more = Arrays.copyOf(current, current.length + 1);
+        more[current.length] = s;
+        subscriptions = more;
+        s.thread.start();
+        return s;
+    }
+
+    private synchronized void unsubscribe(Subscription s) {
+        List<Subscription> rest = new ArrayList<>(Arrays.asList(subscriptions));
+        rest.remove(s);
+        subscriptions = rest.toArray(new Subscription[0]);
+    }
+
+    final class Subscription implements Closeable {
+        final String name;
+        private final Subscriber subscriber;
+        private final AtomicLong done; // last sequence delivered; slots up to it can be reused
+        private final Thread thread;
+        private volatile long closeAt = Long.MAX_VALUE; // last sequence to deliver
+
+        private Subscription(String name, Subscriber subscriber, long start) {
+            this.name = name;
+            this.subscriber = subscriber;
+            done = new AtomicLong(start);
+            thread = new Thread(this::run, "roster-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        // Events published but not delivered yet
+        long lag() {
+            return Math.max(0, claimed.get() - done.get());
+        }
+
+        // Batches: everything published after the last one, in order. The
+        // batch list is reused too.
+        private void run() {
+            List<Event> batch = new ArrayList<>(MAX_BATCH);
+            List<Event> view = Collections.unmodifiableList(batch);
+            long next = done.get() + 1;
+            int idle = 0;
+            try {
+                while (true) {
+                    long last = next - 1;
+                    long end = Math.min(closeAt, next + MAX_BATCH - 1);
+                    while (last < end && published.get((int) ((last + 1) & mask)) == last + 1) {
+                        last++;
+                    }
+                    if (last < next) {
+                        if (next > closeAt) return;
+                        idle = backOff(idle, MAX_IDLE_NANOS);
+                        continue;
+                    }
+                    idle = 0;
+                    batch.clear();
+                    for (long seq = next; seq <= last; seq++) batch.add(ring[(int) (seq & mask)]);
+                    try {
+                        subscriber.onEvents(view);
+                    } catch (Exception e) {
+                        System.err.println("Event subscriber " + name + " failed: " + e);
+                    }
+                    done.lazySet(last);
+                    next = last + 1;
+                }
+            } finally {
+                unsubscribe(this);
+                try {
+                    subscriber.onClose();
+                } catch (Exception e) {
+                    System.err.println("Event subscriber " + name + " failed to close: " + e);
+                }
+            }
+        }
+
+        // Stops once everything published so far is delivered; changes
+        // made afterwards don't wait for this subscriber
+        @Override
+        public void close() {
+            closeAt = Math.min(closeAt, claimed.get());
+        }
+
+        // Waits for close() to finish delivering
+        boolean awaitClosed(long millis) throws InterruptedException {
+            thread.join(millis);
+            return !thread.isAlive();
+        }
+    }
+
+    // ===== PUBLISHING =====
+
+    // Hands out the next sequence, waiting while its slot is still unread
+    private long claim() {
+        long seq = claimed.incrementAndGet();
+        long wrap = seq - ring.length;
+        if (wrap > slowestSeen.get()) {
+            long slowest;
+            int tries = 0;
+            while (wrap > (slowest = slowest(seq - 1))) {
+                tries = backOff(tries, 50_000);
+            }
+            slowestSeen.set(slowest);
+        }
+        return seq;
+    }
+
+    private long slowest(long ifNone) {
+        long min = ifNone;
+        for (Subscription s : subscriptions) min = Math.min(min, s.done.get());
+        return min;
+    }
+
+    // Spins, then yields, then parks for longer and longer (up to maxNanos)
+    private static int backOff(int tries, long maxNanos) {
+        if (tries < SPINS) {
+            Thread.onSpinWait();
+        } else if (tries < SPINS + 10) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(maxNanos, 1000L << Math.min(tries - SPINS - 10, 10)));
+        }
+        return tries + 1;
+    }
+
+    private Event slot(long seq, Kind kind, Student student) {
+        Event e = ring[(int) (seq & mask)];
+        e.sequence = seq;
+        e.kind = kind;
+        e.studentId = student == null ? 0 : student.id();
+        e.name = student == null ? null : student.name;
+        e.oldName = null;
+        e.course = null;
+        e.index = 0;
+        e.grade = 0;
+        e.oldGrade = 0;
+        e.category = null;
+        return e;
+    }
+
+    private void publish(long seq) {
+        published.lazySet((int) (seq & mask), seq);
+    }
+
+    private void grade(Kind kind, Student student, String course, int index, int grade, int oldGrade,
+                       String category) {
+        long seq = claim();
+        Event e = slot(seq, kind, student);
+        e.course = course;
+        e.index = index;
+        e.grade = grade;
+        e.oldGrade = oldGrade;
+        e.category = category;
+        publish(seq);
+    }
+
+    // ===== LISTENER: one event per change =====
+
+    @Override
+    public void studentAdded(Student student) {
+        long seq = claim();
+        slot(seq, Kind.STUDENT_ADDED, student);
+        publish(seq);
+        synchronized (student) {
+            for (int c = 0; c < student.courseCount(); c++) {
+                String course = student.courseName(c);
+                GradeList grades = student.gradesAt(c);
+                if (grades.isEmpty()) {
+                    seq = claim();
+                    slot(seq, Kind.COURSE_ADDED, student).course = course;
+                    publish(seq);
+                }
+                for (int i = 0; i < grades.size(); i++) {
+                    grade(Kind.GRADE_ADDED, student, course, i, grades.get(i), 0,
+                            GradeCategories.name(grades.category(i)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void studentRenamed(Student student, String oldName) {
+        long seq = claim();
+        slot(seq, Kind.STUDENT_RENAMED, student).oldName = oldName;
+        publish(seq);
+    }
+
+    @Override
+    public void studentRemoved(Student student) {
+        long seq = claim();
+        slot(seq, Kind.STUDENT_REMOVED, student);
+        publish(seq);
+    }
+
+    @Override
+    public void rosterCleared(List<Student> removed) {
+        long seq = claim();
+        slot(seq, Kind.ROSTER_CLEARED, null);
+        publish(seq);
+    }
+
+    @Override
+    public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+        grade(Kind.GRADE_ADDED, student, course, student.grades(course).size() - 1, grade, 0, category);
+    }
+
+    @Override
+    public void gradeInserted(Student student, String course, int index, int grade, String category,
+                              boolean newCourse) {
+        grade(Kind.GRADE_ADDED, student, course, index, grade, 0, category);
+    }
+
+    @Override
+    public void courseAdded(Student student, String course, int slot) {
+        long seq = claim();
+        slot(seq, Kind.COURSE_ADDED, student).course = course;
+        publish(seq);
+    }
+
+    @Override
+    public void gradeEdited(Student student, String course, int index, int oldGrade, int newGrade) {
+        grade(Kind.GRADE_EDITED, student, course, index, newGrade, oldGrade, null);
+    }
+
+    @Override
+    public void gradeRemoved(Student student, String course, int index, int oldGrade, String category) {
+        grade(Kind.GRADE_REMOVED, student, course, index, 0, oldGrade, category);
+    }
+
+    @Override
+    public void courseRemoved(Student student, String course, int slot, GradeList grades) {
+        long seq = claim();
+        slot(seq, Kind.COURSE_REMOVED, student).course = course;
+        publish(seq);
+    }
+
+    // ===== EVENT LOG =====
+
+    // A subscriber that appends each event to a file as a line (see
+    // Event.toString()), flushed after every batch and closed with the
+    // subscription
+    static Subscriber log(Path file) throws IOException {
+        BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new Subscriber() {
+            @Override
+            public void onEvents(List<Event> batch) throws IOException {
+                for (Event e : batch) {
+                    out.write(e.toString());
+                    out.write('\n');
+                }
+                out.flush();
+            }
+
+            @Override
+            public void onClose() throws IOException {
+                out.close();
+            }
+        };
+    }
+}
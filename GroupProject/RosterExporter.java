@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes the students.txt report straight into a big byte buffer that is
+// drained through a FileChannel. No printf in the loop: numbers and the
+// two-decimal average (see CourseAverage) are turned into ASCII by hand.
+//
+// Output goes through AtomicFile, so a crash half way through leaves the
+// old file untouched.
+class RosterExporter {
+
+    interface Progress {
+        void update(int done, int total);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] NEWLINE = ascii(System.lineSeparator());
+    private static final byte[] STUDENT = ascii("Student: ");
+    private static final byte[] NO_COURSES = ascii("  No courses/grades.");
+    private static final byte[] INDENT = ascii("  ");
+    private static final byte[] COLON = ascii(": ");
+    private static final byte[] COMMA = ascii(", ");
+    private static final byte[] AVERAGE = ascii(" | Average: ");
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+    private byte[][] courseBytes = new byte[16][]; // UTF-8 course names by course ID
+    private final CourseAverage average = new CourseAverage();
+    private final Map<String, byte[]> letters = new HashMap<>();
+
+    private RosterExporter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Export every student to target; progress may be null
+    static void export(List<Student> students, Path target, Progress progress) throws IOException {
+        RosterMetrics.ExportEvent event = new RosterMetrics.ExportEvent();
+        event.begin();
+        long start = RosterMetrics.start(RosterMetrics.Op.SAVE_TO_FILE);
+        AtomicFile.write(target, channel -> {
+            RosterExporter exporter = new RosterExporter(channel);
+            int total = students.size();
+            int step = Math.max(1, total / 100);
+            for (int i = 0; i < total; i++) {
+                exporter.writeStudent(students.get(i));
+                if (progress != null && (i + 1) % step == 0) {
+                    progress.update(i + 1, total);
+                }
+            }
+            exporter.flush();
+            if (progress != null) {
+                progress.update(total, total);
+            }
+        });
+        RosterMetrics.record(RosterMetrics.Op.SAVE_TO_FILE, start);
+        if (event.shouldCommit()) {
+            event.file = target.toString();
+            event.students = students.size();
+            event.commit();
+        }
+    }
+
+    // Holds the student's lock so a grade change can't land half way through
+    private void writeStudent(Student s) throws IOException {
+        synchronized (s) {
+            writeStudentLocked(s);
+        }
+    }
+
+    private void writeStudentLocked(Student s) throws IOException {
+        put(STUDENT);
+        put(s.name.getBytes(StandardCharsets.UTF_8));
+        put(NEWLINE);
+
+        if (!s.hasCourses()) {
+            put(NO_COURSES);
+            put(NEWLINE);
+        } else {
+            for (int c = 0; c < s.courseCount(); c++) {
+                GradeList grades = s.gradesAt(c);
+                put(INDENT);
+                put(courseName(s, c));
+                put(COLON);
+                for (int i = 0; i < grades.size(); i++) {
+                    if (i > 0) put(COMMA);
+                    putLong(grades.get(i));
+                }
+                put(AVERAGE);
+                average.of(s, c);
+                ensureRoom(average.length());
+                buffer.put(average.text(), 0, average.length());
+                put((byte) ' ');
+                put((byte) '(');
+                put(letterBytes(average.letter()));
+                put((byte) ')');
+                put(NEWLINE);
+            }
+        }
+        put(NEWLINE);
+    }
+
+    private byte[] courseName(Student s, int slot) {
+        int id = s.courseId(slot);
+        if (id >= courseBytes.length) {
+            byte[][] bigger = new byte[Math.max(id + 1, courseBytes.length * 2)][];
+            System.arraycopy(courseBytes, 0, bigger, 0, courseBytes.length);
+            courseBytes = bigger;
+        }
+        if (courseBytes[id] == null) {
+            courseBytes[id] = s.courseName(slot).getBytes(StandardCharsets.UTF_8);
+        }
+        return courseBytes[id];
+    }
+
+    private byte[] letterBytes(String letter) {
+        byte[] bytes = letters.get(letter);
+        if (bytes == null) {
+            bytes = letter.getBytes(StandardCharsets.UTF_8);
+            letters.put(letter, bytes);
+        }
+        return bytes;
+    }
+
+    // ===== BUFFER HELPERS =====
+
+    private void putLong(long value) throws IOException {
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        ensureRoom(digits.length - pos);
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    private void put(byte b) throws IOException {
+        ensureRoom(1);
+        buffer.put(b);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            channel.write(ByteBuffer.wrap(bytes));
+            return;
+        }
+        ensureRoom(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Undo/redo for roster changes. Follows the StudentRegistry like the journal
+// does and turns every change into a Command that reverses it. Nothing is
+// copied: a deleted student is kept as the same object, grades and all, to
+// be put back; a removed course keeps its GradeList; a rename remembers the
+// old name; a removed grade its place and category. So undoing costs the
+// size of what changed, never the size of the roster.
+//
+// Changes are grouped into steps. Everything between begin() and end() (an
+// import, a file load) is one step; any other change is a step of its own.
+// undo() replays the newest step's commands backwards through the registry,
+// so the journal, statistics and roster table follow along as for any other
+// change. The changes the undo makes are recorded the same way and become
+// the redo step (and a redo's become an undo step again). A new change
+// clears redo. Only the newest LIMIT steps, and no more than COMMAND_LIMIT
+// commands in all, are kept. A single step bigger than that (a huge import)
+// can't be undone, and neither can anything before it.
+//
+// Meant for one person at the GUI or console: a change made on another
+// thread while a step is open joins that step.
+class RosterHistory implements RosterListener {
+
+    static final int LIMIT = 100;
+    static final int COMMAND_LIMIT = 100_000;
+
+    // Reverses one change, through the registry
+    interface Command {
+        void apply(StudentRegistry registry);
+    }
+
+    private static final class Step {
+        final String label;
+        List<Command> commands = new ArrayList<>(); // in the order they happened
+        boolean tooBig;                             // went past COMMAND_LIMIT
+
+        Step(String label) {
+            this.label = label;
+        }
+
+        void add(Command command) {
+            if (tooBig) return;
+            if (commands.size() == COMMAND_LIMIT) {
+                tooBig = true;
+                commands = new ArrayList<>(0); // let them go now
+                return;
+            }
+            commands.add(command);
+        }
+
+        boolean isEmpty() {
+            return !tooBig && commands.isEmpty();
+        }
+    }
+
+    // Undo or redo steps, newest first, with their commands counted
+    private static final class Steps {
+        private final Deque<Step> steps = new ArrayDeque<>();
+        private int commands;
+
+        boolean isEmpty() {
+            return steps.isEmpty();
+        }
+
+        // Drops the oldest steps past the limits. A step too big to keep
+        // takes the older ones with it: they'd apply to the wrong roster.
+        void push(Step step) {
+            if (step.tooBig) {
+                clear();
+                return;
+            }
+            steps.push(step);
+            commands += step.commands.size();
+            while (steps.size() > LIMIT || commands > COMMAND_LIMIT) {
+                commands -= steps.removeLast().commands.size();
+            }
+        }
+
+        Step pop() {
+            Step step = steps.pop();
+            commands -= step.commands.size();
+            return step;
+        }
+
+        void clear() {
+            steps.clear();
+            commands = 0;
+        }
+    }
+
+    private final StudentRegistry registry;
+
+    // Guarded by this
+    private final Steps undo = new Steps();
+    private final Steps redo = new Steps();
+    private Step open;        // between begin() and end()
+    private int openDepth;
+    private Step replaying;   // collects what an undo/redo in progress does
+    private Thread replayThread;
+
+    private RosterHistory(StudentRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Records every change from now on
+    static RosterHistory attach(StudentRegistry registry) {
+        RosterHistory history = new RosterHistory(registry);
+        registry.addListener(history);
+        return history;
+    }
+
+    void detach() {
+        registry.removeListener(this);
+    }
+
+    // ===== STEPS =====
+
+    // Groups the changes up to the matching end() into one step. Nests: only
+    // the outermost label counts.
+    synchronized void begin(String label) {
+        if (openDepth++ == 0) {
+            open = new Step(label);
+        }
+    }
+
+    synchronized void end() {
+        if (openDepth == 0 || --openDepth > 0) return;
+        if (!open.isEmpty()) {
+            undo.push(open);
+        }
+        open = null;
+    }
+
+    synchronized boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    synchronized boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    // Reverts the newest step; returns its label, or null if there's nothing
+    // to undo
+    String undo() {
+        return replay(undo, redo);
+    }
+
+    // Re-applies the newest undone step; returns its label, or null
+    String redo() {
+        return replay(redo, undo);
+    }
+
+    // Runs a step's commands newest first. The registry is called without
+    // holding this lock (lock order is registry -> student -> listener); the
+    // changes come back through the listener methods into `replaying`.
+    private String replay(Steps from, Steps to) {
+        Step step;
+        synchronized (this) {
+            if (from.isEmpty() || replayThread != null || openDepth > 0) return null;
+            step = from.pop();
+            replaying = new Step(step.label);
+            replayThread = Thread.currentThread();
+        }
+        try {
+            for (int i = step.commands.size() - 1; i >= 0; i--) {
+                step.commands.get(i).apply(registry);
+            }
+        } finally {
+            synchronized (this) {
+                if (!replaying.isEmpty()) {
+                    to.push(replaying);
+                }
+                replaying = null;
+                replayThread = null;
+            }
+        }
+        return step.label;
+    }
+
+    // The label is only built when the change starts a step of its own
+    private synchronized void record(Supplier<String> label, Command command) {
+        if (replayThread == Thread.currentThread()) {
+            replaying.add(command);
+            return;
+        }
+        redo.clear();
+        if (open != null) {
+            open.add(command);
+        } else {
+            Step step = new Step(label.get());
+            step.add(command);
+            undo.push(step);
+        }
+    }
+
+    // ===== LISTENER: one command per change =====
+
+    @Override
+    public void studentAdded(Student student) {
+        record(() -> "add " + student.name, r -> r.remove(student));
+    }
+
+    @Override
+    public void studentRenamed(Student student, String oldName) {
+        record(() -> "rename " + oldName + " to " + student.name, r -> r.rename(student, oldName));
+    }
+
+    @Override
+    public void studentRemoved(Student student) {
+        // The student keeps its ID and grades, so it goes back as it was
+        record(() -> "delete " + student.name, r -> r.add(student));
+    }
+
+    @Override
+    public void rosterCleared(List<Student> removed) {
+        record(() -> "clear the roster", r -> {
+            for (Student s : removed) r.add(s);
+        });
+    }
+
+    @Override
+    public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+        gradeBack(student, course, student.grades(course).size() - 1, grade, newCourse);
+    }
+
+    @Override
+    public void gradeInserted(Student student, String course, int index, int grade, String category,
+                              boolean newCourse) {
+        gradeBack(student, course, index, grade, newCourse);
+    }
+
+    // A grade that opened its course takes the course with it when undone
+    private void gradeBack(Student student, String course, int index, int grade, boolean newCourse) {
+        Supplier<String> label = () -> "add " + grade + " to " + student.name + " in " + course;
+        if (newCourse) {
+            record(label, r -> r.removeCourse(student, course));
+        } else {
+            record(label, r -> r.removeGrade(student, course, index));
+        }
+    }
+
+    @Override
+    public void courseAdded(Student student, String course, int slot) {
+        record(() -> "add " + course + " for " + student.name, r -> r.removeCourse(student, course));
+    }
+
+    @Override
+    public void gradeEdited(Student student, String course, int index, int oldGrade, int newGrade) {
+        record(() -> "change " + oldGrade + " to " + newGrade + " for " + student.name + " in " + course,
+                r -> r.editGrade(student, course, index, oldGrade));
+    }
+
+    @Override
+    public void gradeRemoved(Student student, String course, int index, int oldGrade, String category) {
+        record(() -> "delete " + oldGrade + " from " + student.name + " in " + course,
+                r -> r.insertGrade(student, course, index, oldGrade, category));
+    }
+
+    @Override
+    public void courseRemoved(Student student, String course, int slot, GradeList grades) {
+        // The removed list is no longer shared with the student, so it can be
+        // kept as it is and read back grade by grade, into the course's old
+        // place among the student's courses
+        record(() -> "delete " + course + " for " + student.name, r -> {
+            r.openCourse(student, course, slot);
+            for (int i = 0; i < grades.size(); i++) {
+                r.addGrade(student, course, grades.get(i), GradeCategories.name(grades.category(i)));
+            }
+        });
+    }
+}
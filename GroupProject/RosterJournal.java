@@ -0,0 +1,654 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal of every roster change (students.journal).
+//
+// The journal listens to the StudentRegistry. Each change is encoded into
+// an in-memory batch right away; a single writer thread appends whatever has
+// piled up and fsyncs once per batch, so a burst of grades costs one fsync,
+// not one each.
+//
+// On startup the last snapshot (students.roster) is loaded and the journal
+// replayed on top of it. compact() folds the journal into a fresh snapshot
+// and starts an empty one, which keeps replay time bounded.
+//
+// File layout:
+//   "TCRJ"  generation:u64
+//   { length:u32  crc32:u32  op:u8  fields... }*
+// A record whose length or CRC doesn't check out (a write torn by a crash)
+// ends the journal; it and anything after it are cut off on open.
+class RosterJournal implements RosterListener, Closeable {
+
+    // Compact once the journal holds this much since the last snapshot
+    static final long COMPACT_AFTER_BYTES = 64L << 20;
+
+    private static final byte[] MAGIC = {'T', 'C', 'R', 'J'};
+    private static final int HEADER_SIZE = MAGIC.length + 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_PENDING = 32 << 20; // appenders wait past this
+
+    // STUDENT_ADDED and GRADE_ADDED are the original records, still read
+    // back; new journals write the *_CATEGORIZED forms where categories apply
+    private static final int STUDENT_ADDED = 1;
+    private static final int STUDENT_RENAMED = 2;
+    private static final int STUDENT_REMOVED = 3;
+    private static final int ROSTER_CLEARED = 4;
+    private static final int GRADE_ADDED = 5;
+    private static final int GRADE_EDITED = 6;
+    private static final int GRADE_REMOVED = 7;
+    private static final int COURSE_REMOVED = 8;
+    private static final int STUDENT_ADDED_CATEGORIZED = 9;
+    private static final int GRADE_ADDED_CATEGORIZED = 10;
+    private static final int GRADE_INSERTED = 11;
+    private static final int COURSE_ADDED = 12;
+    private static final int COURSE_INSERTED = 13; // a course put back before the last one
+
+    private final Path snapshotPath;
+    private final FileChannel channel;
+    private final Thread writer;
+
+    // Guarded by this
+    private Records pending = new Records();
+    private Records spare = new Records();
+    private long appended;   // records handed to us so far
+    private long durable;    // records written and fsync'd
+    private long generation;
+    private boolean closed;
+    private IOException failure;
+
+    private volatile long journalBytes;
+
+    private RosterJournal(Path snapshotPath, FileChannel channel, long generation) throws IOException {
+        this.snapshotPath = snapshotPath;
+        this.channel = channel;
+        this.generation = generation;
+        this.journalBytes = channel.size();
+        writer = new Thread(this::writeLoop, "roster-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Loads the snapshot and replays the journal into an empty registry, then
+    // starts journaling every later change made through it. If that fails
+    // the registry is emptied again: half a roster must never be mistaken
+    // for the whole of it (and saved over it).
+    static RosterJournal open(StudentRegistry registry, Path snapshot, Path journal) throws IOException {
+        try {
+            return load(registry, snapshot, journal);
+        } catch (IOException | RuntimeException e) {
+            registry.clear();
+            throw e;
+        }
+    }
+
+    private static RosterJournal load(StudentRegistry registry, Path snapshot, Path journal) throws IOException {
+        long covered = 0;
+        if (Files.exists(snapshot)) {
+            RosterSnapshot.Contents contents = RosterSnapshot.read(snapshot);
+            for (Student s : contents.students) {
+                registry.add(s);
+            }
+            covered = contents.journalGeneration;
+        }
+
+        FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long generation = covered + 1;
+            long validEnd = 0;
+            if (channel.size() >= HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(channel, header, 0);
+                header.flip();
+                byte[] magic = new byte[MAGIC.length];
+                header.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException(journal + " is not a roster journal");
+                }
+                long fileGeneration = header.getLong();
+                if (fileGeneration > covered) {
+                    // Not yet folded into the snapshot: replay it
+                    generation = fileGeneration;
+                    validEnd = replay(channel, registry);
+                }
+            }
+            if (validEnd == 0) {
+                startFile(channel, generation);
+            } else {
+                channel.truncate(validEnd);
+                channel.position(validEnd);
+            }
+            RosterJournal result = new RosterJournal(snapshot, channel, generation);
+            registry.addListener(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    boolean compactionDue() {
+        return journalBytes > COMPACT_AFTER_BYTES;
+    }
+
+    // Writes a snapshot covering everything journaled so far, then empties the
+    // journal. Roster changes are paused meanwhile so the two always match.
+    void compact(StudentRegistry registry) throws IOException {
+        registry.lockExclusive();
+        try {
+            flush();
+            long folded;
+            synchronized (this) {
+                folded = generation;
+            }
+            // If we crash after this write but before the reset below, the
+            // snapshot already says it covers this generation, so the stale
+            // journal is skipped instead of being replayed twice. The write
+            // returns only once the rename is on disk: emptying the journal
+            // before that could leave the old snapshot and no journal.
+            RosterSnapshot.write(registry.all(), snapshotPath, folded);
+            synchronized (this) {
+                generation = folded + 1;
+                startFile(channel, generation);
+                journalBytes = HEADER_SIZE;
+            }
+        } finally {
+            registry.unlockExclusive();
+        }
+    }
+
+    // Blocks until every change journaled so far is on disk
+    void flush() throws IOException {
+        synchronized (this) {
+            long target = appended;
+            while (durable < target && failure == null) {
+                waitQuietly();
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (this) {
+            if (failure != null) throw failure;
+        }
+    }
+
+    // ===== LISTENER: one record per change =====
+
+    @Override
+    public void studentAdded(Student s) {
+        synchronized (this) {
+            Records r = begin(STUDENT_ADDED_CATEGORIZED);
+            r.putVarint(s.id());
+            r.putString(s.name);
+            r.putVarint(s.courseCount());
+            for (int c = 0; c < s.courseCount(); c++) {
+                GradeList grades = s.gradesAt(c);
+                r.putString(s.courseName(c));
+                r.putVarint(grades.size());
+                for (int i = 0; i < grades.size(); i++) {
+                    r.putSigned(grades.get(i));
+                }
+                // then a flag, and if set each grade's category name
+                r.putVarint(grades.hasCategories() ? 1 : 0);
+                if (grades.hasCategories()) {
+                    for (int i = 0; i < grades.size(); i++) {
+                        r.putString(GradeCategories.name(grades.category(i)));
+                    }
+                }
+            }
+            end(r);
+        }
+    }
+
+    @Override
+    public void studentRenamed(Student s, String oldName) {
+        synchronized (this) {
+            Records r = begin(STUDENT_RENAMED);
+            r.putVarint(s.id());
+            r.putString(s.name);
+            end(r);
+        }
+    }
+
+    @Override
+    public void studentRemoved(Student s) {
+        synchronized (this) {
+            Records r = begin(STUDENT_REMOVED);
+            r.putVarint(s.id());
+            end(r);
+        }
+    }
+
+    @Override
+    public void rosterCleared(List<Student> removed) {
+        synchronized (this) {
+            end(begin(ROSTER_CLEARED));
+        }
+    }
+
+    @Override
+    public void gradeAdded(Student s, String course, int grade, String category, boolean newCourse) {
+        synchronized (this) {
+            Records r = begin(category.isEmpty() ? GRADE_ADDED : GRADE_ADDED_CATEGORIZED);
+            r.putVarint(s.id());
+            r.putString(course);
+            r.putSigned(grade);
+            if (!category.isEmpty()) r.putString(category);
+            end(r);
+        }
+    }
+
+    @Override
+    public void gradeInserted(Student s, String course, int index, int grade, String category, boolean newCourse) {
+        synchronized (this) {
+            Records r = begin(GRADE_INSERTED);
+            r.putVarint(s.id());
+            r.putString(course);
+            r.putVarint(index);
+            r.putSigned(grade);
+            r.putString(category);
+            end(r);
+        }
+    }
+
+    @Override
+    public void gradeEdited(Student s, String course, int index, int oldGrade, int newGrade) {
+        synchronized (this) {
+            Records r = begin(GRADE_EDITED);
+            r.putVarint(s.id());
+            r.putString(course);
+            r.putVarint(index);
+            r.putSigned(newGrade);
+            end(r);
+        }
+    }
+
+    @Override
+    public void gradeRemoved(Student s, String course, int index, int oldGrade, String category) {
+        synchronized (this) {
+            Records r = begin(GRADE_REMOVED);
+            r.putVarint(s.id());
+            r.putString(course);
+            r.putVarint(index);
+            end(r);
+        }
+    }
+
+    @Override
+    public void courseAdded(Student s, String course, int slot) {
+        boolean last = slot == s.courseCount() - 1;
+        synchronized (this) {
+            Records r = begin(last ? COURSE_ADDED : COURSE_INSERTED);
+            r.putVarint(s.id());
+            r.putString(course);
+            if (!last) r.putVarint(slot);
+            end(r);
+        }
+    }
+
+    @Override
+    public void courseRemoved(Student s, String course, int slot, GradeList grades) {
+        synchronized (this) {
+            Records r = begin(COURSE_REMOVED);
+            r.putVarint(s.id());
+            r.putString(course);
+            end(r);
+        }
+    }
+
+    // Caller holds the lock. Once the writer has failed, every change
+    // throws: it's made in memory but would be lost on restart, and the
+    // user has to hear about that then, not at the next flush.
+    private Records begin(int op) {
+        // No notifyAll() in the wait loops here or in flush(): the writer
+        // already knows pending isn't empty, and with many threads waiting
+        // they would only keep waking each other and starve it of the lock
+        while (pending.size() > MAX_PENDING && failure == null && !closed) {
+            waitQuietly();
+        }
+        if (failure != null) {
+            String why = failure.getMessage() != null ? failure.getMessage() : failure.toString();
+            throw new UncheckedIOException("The journal can't be written (" + why
+                    + "): this change and later ones will be lost on restart", failure);
+        }
+        pending.beginRecord();
+        pending.putByte(op);
+        return pending;
+    }
+
+    // Caller holds the lock
+    private void end(Records r) {
+        r.endRecord();
+        appended++;
+        // The writer only sleeps while pending is empty
+        if (r.isFirstRecord()) notifyAll();
+    }
+
+    // ===== WRITER THREAD =====
+
+    // Whatever piles up while the previous batch is being written and
+    // fsync'd becomes the next batch - that's the group commit.
+    private void writeLoop() {
+        while (true) {
+            Records batch;
+            long batchEnd;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    waitQuietly();
+                }
+                if (pending.size() == 0) {
+                    return; // closed and drained
+                }
+                batch = pending;
+                pending = spare;
+                spare = null;
+                batchEnd = appended;
+            }
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch.array(), 0, batch.size());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+                journalBytes += batch.size();
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                batch.clear();
+                spare = batch;
+                durable = batchEnd;
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitQuietly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===== REPLAY =====
+
+    // Applies every intact record after the header; returns where they end.
+    // Reads through one large buffer instead of a read call per record.
+    private static long replay(FileChannel channel, StudentRegistry registry) throws IOException {
+        long size = channel.size();
+        long pos = HEADER_SIZE;       // file offset of the next record
+        long filePos = HEADER_SIZE;   // file offset the next read starts at
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        buffer.flip();
+        CRC32 crc = new CRC32();
+
+        while (pos + RECORD_HEADER <= size) {
+            if (buffer.remaining() < RECORD_HEADER) {
+                filePos = refill(channel, buffer, filePos, RECORD_HEADER);
+            }
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length <= 0 || pos + RECORD_HEADER + length > size) {
+                break;
+            }
+            if (buffer.remaining() < RECORD_HEADER + length) {
+                if (buffer.capacity() < RECORD_HEADER + length) {
+                    ByteBuffer bigger = ByteBuffer.allocate(RECORD_HEADER + length);
+                    bigger.put(buffer).flip();
+                    buffer = bigger;
+                }
+                filePos = refill(channel, buffer, filePos, RECORD_HEADER + length);
+            }
+            int bodyStart = buffer.position() + RECORD_HEADER;
+            crc.reset();
+            crc.update(buffer.array(), bodyStart, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.wrap(buffer.array(), bodyStart, length);
+            apply(new Reader(body), registry);
+            buffer.position(bodyStart + length);
+            pos += RECORD_HEADER + length;
+        }
+        return pos;
+    }
+
+    // Moves unread bytes to the front and reads more until at least `needed`
+    // bytes are available (or the file ends). Returns the new read offset.
+    private static long refill(FileChannel channel, ByteBuffer buffer, long filePos, int needed)
+            throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            int n = channel.read(buffer, filePos);
+            if (n < 0) break;
+            filePos += n;
+        }
+        buffer.flip();
+        if (buffer.remaining() < needed) {
+            throw new IOException("Journal ends early");
+        }
+        return filePos;
+    }
+
+    private static void apply(Reader in, StudentRegistry registry) {
+        int op = in.readByte();
+        if (op == ROSTER_CLEARED) {
+            registry.clear();
+            return;
+        }
+        int id = in.readVarint();
+        if (op == STUDENT_ADDED || op == STUDENT_ADDED_CATEGORIZED) {
+            Student s = new Student(in.readString(), id);
+            int courses = in.readVarint();
+            for (int c = 0; c < courses; c++) {
+                GradeList grades = s.openCourse(in.readString());
+                int count = in.readVarint();
+                int[] values = new int[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = in.readSigned();
+                }
+                boolean categorized = op == STUDENT_ADDED_CATEGORIZED && in.readVarint() == 1;
+                for (int i = 0; i < count; i++) {
+                    grades.add(values[i], categorized ? GradeCategories.intern(in.readString()) : GradeCategories.NONE);
+                }
+            }
+            registry.add(s);
+            return;
+        }
+
+        Student s = registry.findById(id);
+        if (s == null) {
+            return; // can't happen for a journal we wrote; ignore rather than fail startup
+        }
+        switch (op) {
+            case STUDENT_RENAMED:
+                registry.rename(s, in.readString());
+                break;
+            case STUDENT_REMOVED:
+                registry.remove(s);
+                break;
+            case GRADE_ADDED:
+                registry.addGrade(s, in.readString(), in.readSigned());
+                break;
+            case GRADE_ADDED_CATEGORIZED:
+                registry.addGrade(s, in.readString(), in.readSigned(), in.readString());
+                break;
+            case GRADE_INSERTED:
+                registry.insertGrade(s, in.readString(), in.readVarint(), in.readSigned(), in.readString());
+                break;
+            case GRADE_EDITED:
+                registry.editGrade(s, in.readString(), in.readVarint(), in.readSigned());
+                break;
+            case GRADE_REMOVED:
+                registry.removeGrade(s, in.readString(), in.readVarint());
+                break;
+            case COURSE_REMOVED:
+                registry.removeCourse(s, in.readString());
+                break;
+            case COURSE_ADDED:
+                registry.openCourse(s, in.readString());
+                break;
+            case COURSE_INSERTED:
+                registry.openCourse(s, in.readString(), in.readVarint());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record " + op);
+        }
+    }
+
+    // ===== FILE HELPERS =====
+
+    private static void startFile(FileChannel channel, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putLong(generation).flip();
+        channel.truncate(0);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer into, long pos) throws IOException {
+        while (into.hasRemaining()) {
+            int n = channel.read(into, pos);
+            if (n < 0) throw new IOException("Journal ends early");
+            pos += n;
+        }
+    }
+
+    // Growable byte array that records are encoded into
+    private static final class Records {
+        private byte[] bytes = new byte[64 << 10];
+        private int size;
+        private int recordStart;
+        private final CRC32 crc = new CRC32();
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void beginRecord() {
+            recordStart = size;
+            ensure(RECORD_HEADER);
+            size += RECORD_HEADER; // filled in by endRecord
+        }
+
+        // True while the record just ended is the only one so far
+        boolean isFirstRecord() {
+            return recordStart == 0;
+        }
+
+        void endRecord() {
+            int bodyStart = recordStart + RECORD_HEADER;
+            int length = size - bodyStart;
+            crc.reset();
+            crc.update(bytes, bodyStart, length);
+            ByteBuffer.wrap(bytes, recordStart, RECORD_HEADER)
+                    .putInt(length)
+                    .putInt((int) crc.getValue());
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void putVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putSigned(int value) {
+            putVarint((value << 1) ^ (value >> 31)); // zigzag
+        }
+
+        void putString(String text) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            putVarint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + more, bytes.length * 2));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer in;
+
+        Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        int readByte() {
+            return in.get() & 0xFF;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalStateException("Malformed varint in journal");
+        }
+
+        int readSigned() {
+            int z = readVarint();
+            return (z >>> 1) ^ -(z & 1);
+        }
+
+        String readString() {
+            byte[] utf8 = new byte[readVarint()];
+            in.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.List;
+
+// Told about every change StudentRegistry makes, right after it happens and
+// on the thread that made it. Used by the journal and anything else that has
+// to follow the roster. Keep implementations quick - they run inline.
+interface RosterListener {
+
+    // The student may already have courses and grades (loaded from a file)
+    default void studentAdded(Student student) {
+    }
+
+    default void studentRenamed(Student student, String oldName) {
+    }
+
+    default void studentRemoved(Student student) {
+    }
+
+    // Every student was removed at once; `removed` is who they were, in
+    // roster order
+    default void rosterCleared(List<Student> removed) {
+    }
+
+    // category is "" for an uncategorized grade; newCourse if the grade
+    // opened the course for the student
+    default void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+    }
+
+    // A grade put back at `index` (undoing a removal); to anything that
+    // doesn't care about order it's just an added grade
+    default void gradeInserted(Student student, String course, int index, int grade, String category,
+                               boolean newCourse) {
+        gradeAdded(student, course, grade, category, newCourse);
+    }
+
+    // A course opened with no grades (undoing its removal; a first grade
+    // opens a course through gradeAdded instead). It went in at `slot` of
+    // the student's courses: before the end when undo puts a course back
+    // where it was.
+    default void courseAdded(Student student, String course, int slot) {
+    }
+
+    default void gradeEdited(Student student, String course, int index, int oldGrade, int newGrade) {
+    }
+
+    default void gradeRemoved(Student student, String course, int index, int oldGrade, String category) {
+    }
+
+    // The course was at `slot` of the student's courses
+    default void courseRemoved(Student student, String course, int slot, GradeList grades) {
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads students back in. Two formats:
+//  - students.txt, as written by saveToFile / RosterExporter:
+//        Student: Ann
+//          Math: 90, 85 | Average: 87.50 (B)
+//    ("  No courses/grades." and blank lines are skipped; the average is
+//    recomputed, not read)
+//  - CSV with one grade per row:  name,course,grade[,category]
+//    (an optional header row is skipped; fields may be "quoted"; rows
+//    without a category have none)
+// load() also recognizes binary snapshots (see RosterSnapshot).
+//
+// Both are parsed straight from bytes in a large read buffer: no Scanner,
+// no String.split, and only the names/courses are turned into Strings.
+// Students come back detached; the caller registers them.
+class RosterLoader {
+
+    static final class Result {
+        final List<Student> students;
+        // CSV rows are grades for students who may already exist, so the
+        // caller should merge by name instead of adding new students
+        final boolean mergeByName;
+        // A snapshot is the whole roster with its IDs, so it replaces
+        // whatever is loaded instead of adding to it
+        final boolean replacesRoster;
+
+        Result(List<Student> students, boolean mergeByName, boolean replacesRoster) {
+            this.students = students;
+            this.mergeByName = mergeByName;
+            this.replacesRoster = replacesRoster;
+        }
+    }
+
+    private interface LineHandler {
+        void line(byte[] buf, int start, int end, long lineNumber) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 4 << 20;
+    private static final byte[] STUDENT_PREFIX = "Student: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AVERAGE_MARKER = " | Average:".getBytes(StandardCharsets.US_ASCII);
+
+    static Result load(Path file) throws IOException {
+        RosterMetrics.BulkEvent event = new RosterMetrics.BulkEvent();
+        event.begin();
+        long start = RosterMetrics.start(RosterMetrics.Op.LOAD);
+        Result result;
+        if (RosterSnapshot.isSnapshot(file)) {
+            result = new Result(RosterSnapshot.read(file).students, false, true);
+        } else if (file.getFileName().toString().toLowerCase().endsWith(".csv")) {
+            result = new Result(readCsv(file), true, false);
+        } else {
+            result = new Result(readText(file), false, false);
+        }
+        RosterMetrics.record(RosterMetrics.Op.LOAD, start);
+        if (event.shouldCommit()) {
+            event.operation = "load";
+            event.file = file.toString();
+            event.rows = result.students.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    // ===== students.txt =====
+
+    static List<Student> readText(Path file) throws IOException {
+        List<Student> result = new ArrayList<>();
+        Student[] current = {null};
+
+        forEachLine(file, (buf, start, end, lineNumber) -> {
+            if (start == end) return;
+
+            if (startsWith(buf, start, end, STUDENT_PREFIX)) {
+                String name = utf8(buf, start + STUDENT_PREFIX.length, end).trim();
+                current[0] = new Student(name);
+                result.add(current[0]);
+                return;
+            }
+            if (buf[start] != ' ') {
+                throw malformed(lineNumber, "expected \"Student:\" or an indented course line");
+            }
+
+            int avg = lastIndexOf(buf, start, end, AVERAGE_MARKER);
+            if (avg < 0) {
+                return; // "  No courses/grades."
+            }
+            if (current[0] == null) {
+                throw malformed(lineNumber, "course line before any \"Student:\" line");
+            }
+            // Grades are only digits, commas and spaces, so the last ':' before
+            // the average splits the course name (which may hold ':') from them
+            int colon = avg - 1;
+            while (colon >= start && buf[colon] != ':') colon--;
+            if (colon < start) {
+                throw malformed(lineNumber, "missing ':' after course name");
+            }
+
+            String course = utf8(buf, start, colon).trim();
+            parseGrades(buf, colon + 1, avg, current[0].openCourse(course), lineNumber);
+        });
+        return result;
+    }
+
+    private static void parseGrades(byte[] buf, int pos, int end, GradeList into, long lineNumber)
+            throws IOException {
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == ' ' || b == ',') {
+                pos++;
+                continue;
+            }
+            boolean negative = b == '-';
+            if (negative) pos++;
+            int value = 0;
+            int digitsStart = pos;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos] - '0');
+                pos++;
+            }
+            if (pos == digitsStart) {
+                throw malformed(lineNumber, "bad grade");
+            }
+            into.add(negative ? -value : value);
+        }
+    }
+
+    // ===== CSV =====
+
+    // Receives parsed CSV rows. A name or course that repeats the previous
+    // row's comes back as the very same String, so sinks can cache on it.
+    interface CsvRows {
+        // category is "" when the row has none
+        void row(long lineNumber, String name, String course, int grade, String category) throws IOException;
+
+        // By default one bad row fails the whole file
+        default void badRow(long lineNumber, String problem) throws IOException {
+            throw malformed(lineNumber, problem);
+        }
+    }
+
+    static List<Student> readCsv(Path file) throws IOException {
+        List<Student> result = new ArrayList<>();
+        Map<String, Student> byName = new HashMap<>();
+        String[] lastName = {null};
+        Student[] lastStudent = {null};
+
+        readCsv(file, (lineNumber, name, course, grade, category) -> {
+            if (name != lastName[0]) {
+                String key = StudentRegistry.key(name);
+                Student student = byName.get(key);
+                if (student == null) {
+                    student = new Student(name);
+                    byName.put(key, student);
+                    result.add(student);
+                }
+                lastName[0] = name;
+                lastStudent[0] = student;
+            }
+            lastStudent[0].addGrade(course, grade, category);
+        });
+        return result;
+    }
+
+    static void readCsv(Path file, CsvRows rows) throws IOException {
+        forEachLine(file, new CsvHandler(rows));
+    }
+
+    private static final class CsvHandler implements LineHandler {
+        private final CsvRows rows;
+        private final int[] fieldStart = new int[4];
+        private final int[] fieldEnd = new int[4];
+
+        // Rows usually come grouped by student, so remember the previous
+        // row's raw name bytes and skip the decode on repeats. There are
+        // only a handful of courses and categories, so keep a small list of
+        // recently seen ones the same way.
+        private byte[] lastNameBytes;
+        private String lastName;
+        private final byte[][] courseBytes = new byte[16][];
+        private final String[] courses = new String[16];
+        private int nextCourseSlot;
+
+        CsvHandler(CsvRows rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void line(byte[] buf, int start, int end, long lineNumber) throws IOException {
+            if (start == end) return;
+            int fields = splitCsv(buf, start, end, fieldStart, fieldEnd);
+            if (fields != 3 && fields != 4) {
+                rows.badRow(lineNumber, "expected name,course,grade[,category]");
+                return;
+            }
+
+            int grade;
+            try {
+                grade = parseInt(buf, fieldStart[2], fieldEnd[2]);
+            } catch (NumberFormatException e) {
+                if (lineNumber != 1) { // line 1 may be a header row
+                    rows.badRow(lineNumber, "bad grade");
+                }
+                return;
+            }
+
+            if (!sameBytes(lastNameBytes, buf, fieldStart[0], fieldEnd[0])) {
+                lastName = unquote(utf8(buf, fieldStart[0], fieldEnd[0]).trim());
+                lastNameBytes = copy(buf, fieldStart[0], fieldEnd[0]);
+            }
+
+            String category = fields == 4 ? recent(buf, fieldStart[3], fieldEnd[3]) : "";
+            rows.row(lineNumber, lastName, recent(buf, fieldStart[1], fieldEnd[1]), grade, category);
+        }
+
+        // A course or category name, decoded once while it keeps coming up
+        private String recent(byte[] buf, int start, int end) {
+            for (int i = 0; i < courses.length; i++) {
+                if (sameBytes(courseBytes[i], buf, start, end)) {
+                    return courses[i];
+                }
+            }
+            int slot = nextCourseSlot;
+            nextCourseSlot = (nextCourseSlot + 1) % courses.length;
+            courseBytes[slot] = copy(buf, start, end);
+            courses[slot] = unquote(utf8(buf, start, end).trim());
+            return courses[slot];
+        }
+    }
+
+    // Finds up to starts.length comma-separated fields, honoring "quotes".
+    // Returns how many fields the line really has.
+    private static int splitCsv(byte[] buf, int start, int end, int[] starts, int[] ends) {
+        int count = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        for (int i = start; i <= end; i++) {
+            if (i < end && buf[i] == '"') {
+                quoted = !quoted;
+            } else if (i == end || (buf[i] == ',' && !quoted)) {
+                if (count < starts.length) {
+                    starts[count] = fieldStart;
+                    ends[count] = i;
+                }
+                count++;
+                fieldStart = i + 1;
+            }
+        }
+        return count;
+    }
+
+    private static String unquote(String field) {
+        if (field.length() >= 2 && field.charAt(0) == '"' && field.charAt(field.length() - 1) == '"') {
+            return field.substring(1, field.length() - 1).replace("\"\"", "\"").trim();
+        }
+        return field;
+    }
+
+    private static int parseInt(byte[] buf, int start, int end) {
+        while (start < end && buf[start] == ' ') start++;
+        while (end > start && buf[end - 1] == ' ') end--;
+        boolean negative = start < end && buf[start] == '-';
+        if (negative) start++;
+        if (start == end || end - start > 9) throw new NumberFormatException();
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException();
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    // ===== BYTE HELPERS =====
+
+    // Calls handler once per line ('\n' or "\r\n" endings), reading the
+    // file through one large buffer and carrying partial lines over.
+    private static void forEachLine(Path file, LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long lineNumber = 0;
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buffer) < 0;
+                byte[] buf = buffer.array();
+                int limit = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (buf[i] == '\n') {
+                        int lineEnd = i > lineStart && buf[i - 1] == '\r' ? i - 1 : i;
+                        handler.line(buf, lineStart, lineEnd, ++lineNumber);
+                        lineStart = i + 1;
+                    }
+                }
+                if (eof) {
+                    if (lineStart < limit) {
+                        int lineEnd = buf[limit - 1] == '\r' ? limit - 1 : limit;
+                        handler.line(buf, lineStart, lineEnd, ++lineNumber);
+                    }
+                    break;
+                }
+                // keep the unfinished line, growing the buffer if one line fills it
+                int leftover = limit - lineStart;
+                if (leftover == buffer.capacity()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    bigger.put(buf, 0, leftover);
+                    buffer = bigger;
+                } else {
+                    System.arraycopy(buf, lineStart, buf, 0, leftover);
+                    buffer.position(leftover);
+                }
+            }
+        }
+    }
+
+    private static boolean startsWith(byte[] buf, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[start + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static int lastIndexOf(byte[] buf, int start, int end, byte[] marker) {
+        outer:
+        for (int i = end - marker.length; i >= start; i--) {
+            for (int j = 0; j < marker.length; j++) {
+                if (buf[i + j] != marker[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean sameBytes(byte[] a, byte[] buf, int start, int end) {
+        if (a == null || a.length != end - start) return false;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != buf[start + i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] copy(byte[] buf, int start, int end) {
+        byte[] out = new byte[end - start];
+        System.arraycopy(buf, start, out, 0, out.length);
+        return out;
+    }
+
+    private static String utf8(byte[] buf, int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static IOException malformed(long lineNumber, String problem) {
+        return new IOException("Line " + lineNumber + ": " + problem);
+    }
+}
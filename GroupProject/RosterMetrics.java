@@ -0,0 +1,325 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Where time goes: a call counter and latency histogram (see
+// LatencyHistogram) per roster operation, plus the roster's size. Timed
+// code does
+//
+//   long start = RosterMetrics.start(Op.ADD_GRADE);
+//   ...
+//   RosterMetrics.record(Op.ADD_GRADE, start);
+//
+// Nothing is allocated. Every call is counted and whole-roster jobs are
+// timed every time. System.nanoTime() costs more than a lookup or an
+// average, so the per-student operations are timed one call in 64 per
+// thread (a countdown, no random draw) and their histograms built from
+// that sample. -Droster.metrics.sample=N times one in N instead (1: every
+// call, 0: none), and -Droster.metrics=false turns it all off. Both
+// settings are static finals, so the JIT drops whatever is switched off.
+//
+// The numbers can be read three ways:
+//  - JMX: GroupProject:type=Operation,name=<op> (Count, TimedCount,
+//    MeanMicros, P50Micros ... MaxMicros) and GroupProject:type=Roster
+//    (Students, Grades), e.g. in JConsole or VisualVM
+//  - dump(): a text table; the console prints it from the menu and, with
+//    -Droster.metrics.dump=SECONDS, to stderr every so often
+//  - JFR: exports and bulk jobs (load, import, snapshot) also commit an
+//    ExportEvent / BulkEvent, in category "Grade Manager"
+final class RosterMetrics implements RosterListener {
+
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("roster.metrics"));
+    static final int SAMPLE_EVERY = Integer.getInteger("roster.metrics.sample", 64); // 0: not timed
+
+    enum Op {
+        FIND_BY_NAME("findStudentByName", true),
+        ADD_GRADE("addGrade", true),
+        CALCULATE_AVERAGE("calculateAverage", true),
+        DISPLAY_ALL("displayAllStudents", false),
+        SAVE_TO_FILE("saveToFile", false),
+        LOAD("loadFromFile", false),
+        IMPORT("importGrades", false),
+        SNAPSHOT("saveSnapshot", false);
+
+        final String label;
+        final LongAdder calls = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        private final boolean sampled;
+
+        Op(String label, boolean sampled) {
+            this.label = label;
+            this.sampled = sampled;
+        }
+    }
+
+    // Calls left until the next timed one, per thread and sampled Op
+    private static final ThreadLocal<int[]> untilSample =
+            ThreadLocal.withInitial(() -> new int[Op.values().length]);
+
+    private static volatile RosterMetrics attached;
+
+    private final StudentRegistry registry;
+    private final LongAdder grades = new LongAdder();
+
+    private RosterMetrics(StudentRegistry registry) {
+        this.registry = registry;
+    }
+
+    // ===== TIMING =====
+
+    // 0 if this call isn't one of the sampled ones
+    static long start(Op op) {
+        if (!ENABLED) return 0;
+        if (op.sampled) {
+            if (SAMPLE_EVERY <= 0) return 0;
+            int[] left = untilSample.get();
+            if (--left[op.ordinal()] > 0) return 0;
+            left[op.ordinal()] = SAMPLE_EVERY;
+        }
+        return System.nanoTime();
+    }
+
+    static void record(Op op, long start) {
+        if (ENABLED) {
+            op.calls.increment();
+            if (start != 0) op.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    // ===== ROSTER SIZE =====
+
+    // Starts counting the roster's grades and registers the JMX beans.
+    // Changes are paused for the initial count.
+    static RosterMetrics attach(StudentRegistry registry) {
+        RosterMetrics metrics = new RosterMetrics(registry);
+        registry.lockExclusive();
+        try {
+            for (Student s : registry.all()) {
+                metrics.grades.add(gradeCount(s));
+            }
+            registry.addListener(metrics);
+        } finally {
+            registry.unlockExclusive();
+        }
+        attached = metrics;
+        metrics.registerBeans();
+        return metrics;
+    }
+
+    int students() {
+        return registry.size();
+    }
+
+    long grades() {
+        return grades.sum();
+    }
+
+    private static long gradeCount(Student s) {
+        synchronized (s) {
+            long count = 0;
+            for (int c = 0; c < s.courseCount(); c++) {
+                count += s.gradesAt(c).size();
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public void studentAdded(Student student) {
+        grades.add(gradeCount(student));
+    }
+
+    @Override
+    public void studentRemoved(Student student) {
+        grades.add(-gradeCount(student));
+    }
+
+    @Override
+    public void rosterCleared(List<Student> removed) {
+        grades.reset();
+    }
+
+    @Override
+    public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+        grades.increment();
+    }
+
+    @Override
+    public void gradeRemoved(Student student, String course, int index, int oldGrade, String category) {
+        grades.decrement();
+    }
+
+    @Override
+    public void courseRemoved(Student student, String course, int slot, GradeList removed) {
+        grades.add(-removed.size());
+    }
+
+    // ===== TEXT DUMP =====
+
+    // Every operation that has run at least once; times in microseconds,
+    // from the sampled calls ("-" if none was timed)
+    static String dump() {
+        StringBuilder text = new StringBuilder();
+        RosterMetrics metrics = attached;
+        if (metrics != null) {
+            text.append("Roster: ").append(metrics.students()).append(" students, ")
+                    .append(metrics.grades()).append(" grades\n");
+        }
+        if (!ENABLED) {
+            return text.append("Operation timing is off (-Droster.metrics=false)\n").toString();
+        }
+        text.append(String.format("%-20s %10s %10s %10s %10s %10s %10s%n",
+                "Operation (us)", "Count", "Mean", "p50", "p99", "p99.9", "Max"));
+        for (Op op : Op.values()) {
+            long calls = op.calls.sum();
+            if (calls == 0) continue;
+            LatencyHistogram.Snapshot s = op.latency.snapshot();
+            if (s.count == 0) {
+                text.append(String.format("%-20s %10d %10s %10s %10s %10s %10s%n",
+                        op.label, calls, "-", "-", "-", "-", "-"));
+                continue;
+            }
+            text.append(String.format("%-20s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    op.label, calls, s.mean / 1e3, s.p50 / 1e3, s.p99 / 1e3, s.p999 / 1e3, s.max / 1e3));
+        }
+        return text.toString();
+    }
+
+    // ===== JMX =====
+
+    private void registerBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Map<String, Supplier<Object>> roster = new LinkedHashMap<>();
+            roster.put("Students", this::students);
+            roster.put("Grades", this::grades);
+            register(server, new ObjectName("GroupProject:type=Roster"), new Bean("Roster size", roster));
+
+            for (Op op : Op.values()) {
+                Map<String, Supplier<Object>> values = new LinkedHashMap<>();
+                values.put("Count", op.calls::sum);
+                values.put("TimedCount", () -> op.latency.snapshot().count);
+                values.put("MeanMicros", () -> op.latency.snapshot().mean / 1e3);
+                values.put("P50Micros", () -> op.latency.snapshot().p50 / 1e3);
+                values.put("P90Micros", () -> op.latency.snapshot().p90 / 1e3);
+                values.put("P99Micros", () -> op.latency.snapshot().p99 / 1e3);
+                values.put("P999Micros", () -> op.latency.snapshot().p999 / 1e3);
+                values.put("MaxMicros", () -> op.latency.snapshot().max / 1e3);
+                register(server, new ObjectName("GroupProject:type=Operation,name=" + op.label),
+                        new Bean(op.label + " calls and latency", values));
+            }
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Could not register metrics with JMX (" + e.getMessage() + ")");
+        }
+    }
+
+    // Replaces the beans of an earlier attach()
+    private static void register(MBeanServer server, ObjectName name, Bean bean) throws JMException {
+        if (server.isRegistered(name)) server.unregisterMBean(name);
+        server.registerMBean(bean, name);
+    }
+
+    // Read-only attributes backed by suppliers. A DynamicMBean rather than a
+    // standard one because JMX only introspects public interfaces.
+    private static final class Bean implements DynamicMBean {
+        private final Map<String, Supplier<Object>> values;
+        private final MBeanInfo info;
+
+        Bean(String description, Map<String, Supplier<Object>> values) {
+            this.values = values;
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Supplier<Object>> e : values.entrySet()) {
+                String type = e.getValue().get().getClass().getName();
+                attributes[i++] = new MBeanAttributeInfo(e.getKey(), type, e.getKey(), true, false, false);
+            }
+            info = new MBeanInfo(RosterMetrics.class.getName(), description, attributes, null, null, null);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Supplier<Object> value = values.get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value.get();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String name : attributes) {
+                Supplier<Object> value = values.get(name);
+                if (value != null) list.add(new Attribute(name, value.get()));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+
+    // ===== JFR =====
+
+    @Name("groupproject.Export")
+    @Label("Roster Export")
+    @Category("Grade Manager")
+    @Description("Save to File: every student written to a text report")
+    static final class ExportEvent extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Students")
+        int students;
+    }
+
+    @Name("groupproject.Bulk")
+    @Label("Roster Bulk Operation")
+    @Category("Grade Manager")
+    @Description("A whole-file job: loading a roster, importing grades or writing a snapshot")
+    static final class BulkEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("File")
+        String file;
+
+        @Label("Rows")
+        long rows;
+    }
+}
@@ -0,0 +1,496 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Headless mode: the roster over HTTP (the JDK's HttpServer), so the portal
+// and many teachers can share it. Same StudentRegistry, journal and
+// grading rules as the console and GUI.
+//
+//   GET  /students?prefix=An&limit=50       students by name (id, name)
+//   POST /students              name=Ann    add a student
+//   GET  /students/{id}                     courses, grades, averages, GPA
+//   POST /students/{id}/grades  course=Math&grade=90[&category=exam]
+//   GET  /students/{id}/average?course=Math
+//   GET  /table?course=Math&letter=B&name=An the Display All Students table
+//   GET  /statistics                        the Class Statistics report
+//
+// Parameters come from the query string or a form-encoded body. Replies
+// are JSON (the table and statistics are plain text); problems come back
+// as {"error": "..."} with a 4xx status.
+//
+// As one shard of a sharded roster (see ShardRouter) it also answers the
+// router's /shard/names, /shard/rows and /shard/statistics: the shard's part
+// of a listing, table or report, in a form the router can merge.
+//
+// Each request runs on its own virtual thread when the JVM has them (21+),
+// otherwise on a fixed pool. A change is answered only once the journal
+// has it on disk; concurrent requests share the journal's fsyncs.
+class RosterServer {
+
+    static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = 4096;         // pending connections the OS may queue
+    static final int DEFAULT_LIMIT = 100;            // students per listing
+    static final int MAX_LIMIT = 1000;
+    static final int TOP_SHOWN = 5;                  // places in the statistics rankings
+    private static final int MAX_BODY = 64 << 10;
+    private static final int MAINTENANCE_SECONDS = 5;
+
+    private final StudentRegistry registry;
+    private final RosterJournal journal; // null if changes aren't journaled
+    private final Runnable maintenance;
+    private RosterAnalytics analytics; // built on the first /statistics
+    private HttpServer server;
+    private ExecutorService requests;
+    private ScheduledExecutorService housekeeping;
+
+    // maintenance runs every few seconds on a thread of its own (e.g.
+    // journal compaction), never alongside itself
+    RosterServer(StudentRegistry registry, RosterJournal journal, Runnable maintenance) {
+        this.registry = registry;
+        this.journal = journal;
+        this.maintenance = maintenance;
+    }
+
+    void start(String address, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(address, port), BACKLOG);
+        requests = requestExecutor();
+        server.setExecutor(requests);
+        server.createContext("/", this::handle);
+        server.start();
+
+        housekeeping = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "roster-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeping.scheduleWithFixedDelay(maintenance, MAINTENANCE_SECONDS, MAINTENANCE_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    // Stops accepting requests and gives running ones up to `seconds` to finish
+    void stop(int seconds) {
+        server.stop(seconds);
+        housekeeping.shutdownNow();
+        requests.shutdown();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    // A virtual thread per request where available; found reflectively so
+    // the code still builds and runs on 17
+    static ExecutorService requestExecutor() {
+        try {
+            Method perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) perTask.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "roster-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ===== ROUTING =====
+
+    // A request that can't be served; becomes a 4xx reply
+    static final class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String reply;
+            int status = 200;
+            try {
+                String[] path = exchange.getRequestURI().getPath().split("/");
+                String method = exchange.getRequestMethod();
+                Map<String, String> params = params(exchange);
+                // path[0] is the empty string before the leading '/'
+                String top = path.length < 2 ? "" : path[1];
+                if (top.equals("table") && path.length == 2) {
+                    allow(exchange, "GET");
+                    RosterTable.Filter filter = filter(params);
+                    sendText(exchange, out -> RosterTable.print(registry, filter, out, 0, null));
+                    return;
+                } else if (top.equals("statistics") && path.length == 2) {
+                    allow(exchange, "GET");
+                    sendText(exchange, RosterAnalytics.text(analytics(), TOP_SHOWN));
+                    return;
+                } else if (top.equals("shard") && path.length == 3) {
+                    allow(exchange, "GET");
+                    if (path[2].equals("rows")) {
+                        RosterTable.Filter filter = filter(params);
+                        sendText(exchange, out -> RosterTable.printRows(registry, filter, out));
+                    } else {
+                        sendText(exchange, shardPart(path[2], params));
+                    }
+                    return;
+                } else if (!top.equals("students")) {
+                    throw new BadRequest(404, "Not found");
+                } else if (path.length == 2) {
+                    if (method.equals("GET")) {
+                        reply = listStudents(params);
+                    } else if (method.equals("POST")) {
+                        reply = addStudent(params);
+                        status = 201;
+                    } else {
+                        throw notAllowed(exchange, "GET, POST");
+                    }
+                } else if (path.length > 4) {
+                    throw new BadRequest(404, "Not found");
+                } else {
+                    Student student = student(path[2]);
+                    switch (path.length == 3 ? "" : path[3]) {
+                        case "":
+                            allow(exchange, "GET");
+                            reply = describe(student);
+                            break;
+                        case "grades":
+                            allow(exchange, "POST");
+                            reply = addGrade(student, params);
+                            status = 201;
+                            break;
+                        case "average":
+                            allow(exchange, "GET");
+                            reply = average(student, params);
+                            break;
+                        default:
+                            throw new BadRequest(404, "Not found");
+                    }
+                }
+            } catch (BadRequest e) {
+                status = e.status;
+                reply = error(e.getMessage());
+            } catch (RuntimeException e) {
+                status = 500;
+                reply = internalError(exchange, e);
+            }
+            send(exchange, status, reply);
+        }
+    }
+
+    static BadRequest notAllowed(HttpExchange exchange, String allowed) {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        return new BadRequest(405, "Method not allowed");
+    }
+
+    static void allow(HttpExchange exchange, String method) throws BadRequest {
+        if (!exchange.getRequestMethod().equals(method)) throw notAllowed(exchange, method);
+    }
+
+    // ===== ACTIONS =====
+
+    private String listStudents(Map<String, String> params) throws BadRequest {
+        String prefix = params.getOrDefault("prefix", "").trim();
+        int limit = DEFAULT_LIMIT;
+        if (params.containsKey("limit")) {
+            limit = number(params.get("limit"), "limit");
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new BadRequest(400, "limit must be between 1 and " + MAX_LIMIT + ".");
+            }
+        }
+        List<Student> found = registry.findByPrefix(prefix, limit);
+        StringBuilder json = new StringBuilder(32 + found.size() * 32);
+        json.append("{\"total\":").append(registry.size()).append(",\"students\":[");
+        for (int i = 0; i < found.size(); i++) {
+            Student s = found.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(s.id()).append(",\"name\":").append(quote(s.name)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String addStudent(Map<String, String> params) throws BadRequest {
+        String name = required(params, "name", "Name cannot be empty.");
+        Student s = registry.add(name);
+        durable();
+        return "{\"id\":" + s.id() + ",\"name\":" + quote(s.name) + "}";
+    }
+
+    private String describe(Student s) {
+        StringBuilder json = new StringBuilder(128);
+        synchronized (s) {
+            json.append("{\"id\":").append(s.id()).append(",\"name\":").append(quote(s.name));
+            json.append(",\"gpa\":").append(decimal(s.gpa())).append(",\"courses\":[");
+            for (int c = 0; c < s.courseCount(); c++) {
+                GradeList grades = s.gradesAt(c);
+                String course = s.courseName(c);
+                double average = CourseRules.average(course, grades);
+                if (c > 0) json.append(',');
+                json.append("{\"course\":").append(quote(course)).append(",\"grades\":[");
+                for (int i = 0; i < grades.size(); i++) {
+                    if (i > 0) json.append(',');
+                    json.append(grades.get(i));
+                }
+                json.append(']');
+                if (grades.hasCategories()) {
+                    json.append(",\"categories\":[");
+                    for (int i = 0; i < grades.size(); i++) {
+                        if (i > 0) json.append(',');
+                        json.append(quote(GradeCategories.name(grades.category(i))));
+                    }
+                    json.append(']');
+                }
+                json.append(",\"average\":").append(decimal(average))
+                        .append(",\"letter\":").append(quote(GradingScale.forCourse(course).letter(average)))
+                        .append('}');
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    private String addGrade(Student s, Map<String, String> params) throws BadRequest {
+        String course = required(params, "course", "Course cannot be empty.");
+        int grade = number(required(params, "grade", "Grade is required."), "grade");
+        if (grade < 0 || grade > 100) {
+            throw new BadRequest(400, "Grade must be between 0 and 100.");
+        }
+        try {
+            registry.addGrade(s, course, grade, params.getOrDefault("category", ""));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest(400, e.getMessage());
+        }
+        durable();
+        return averageJson(s, course);
+    }
+
+    private String average(Student s, Map<String, String> params) throws BadRequest {
+        String course = required(params, "course", "Course cannot be empty.");
+        if (s.grades(course) == null) {
+            throw new BadRequest(404, s.name + " has no grades in " + course + ".");
+        }
+        return averageJson(s, course);
+    }
+
+    private static String averageJson(Student s, String course) {
+        double average = s.calculateAverage(course);
+        return "{\"id\":" + s.id() + ",\"course\":" + quote(course)
+                + ",\"average\":" + decimal(average)
+                + ",\"letter\":" + quote(GradingScale.forCourse(course).letter(average)) + "}";
+    }
+
+    // Display All Students' filters: course, letter and name prefix
+    static RosterTable.Filter filter(Map<String, String> params) {
+        RosterTable.Filter filter = new RosterTable.Filter();
+        filter.course = params.getOrDefault("course", "").trim();
+        filter.letter = params.getOrDefault("letter", "").trim();
+        filter.namePrefix = params.getOrDefault("name", "").trim();
+        return filter;
+    }
+
+    private synchronized RosterAnalytics analytics() {
+        if (analytics == null) {
+            analytics = RosterAnalytics.attach(registry);
+        }
+        return analytics;
+    }
+
+    // This shard's part of a roster-wide request, for the router to merge
+    private String shardPart(String part, Map<String, String> params) throws BadRequest, IOException {
+        switch (part) {
+            case "names":
+                return names(params);
+            case "statistics": {
+                int n = number(params.getOrDefault("top", String.valueOf(TOP_SHOWN)), "top");
+                StringWriter text = new StringWriter(4096);
+                analytics().writeSummary(text, Math.max(0, Math.min(n, MAX_LIMIT)));
+                return text.toString();
+            }
+            default:
+                throw new BadRequest(404, "Not found");
+        }
+    }
+
+    // The roster size, then up to `limit` students by name as "id TAB name"
+    private String names(Map<String, String> params) throws BadRequest {
+        String prefix = params.getOrDefault("prefix", "").trim();
+        int limit = number(params.getOrDefault("limit", String.valueOf(MAX_LIMIT)), "limit");
+        List<Student> found = registry.findByPrefix(prefix, Math.max(0, Math.min(limit, MAX_LIMIT)));
+        StringBuilder text = new StringBuilder(16 + found.size() * 24);
+        text.append(registry.size()).append('\n');
+        for (Student s : found) {
+            text.append(s.id()).append('\t').append(TabFields.field(s.name)).append('\n');
+        }
+        return text.toString();
+    }
+
+    // ===== HELPERS =====
+
+    private Student student(String id) throws BadRequest {
+        Student s;
+        try {
+            s = registry.findById(Integer.parseInt(id));
+        } catch (NumberFormatException e) {
+            s = null;
+        }
+        if (s == null) {
+            throw new BadRequest(404, "No student with ID " + id + ".");
+        }
+        return s;
+    }
+
+    // Waits until the change just made is in the journal on disk
+    private void durable() throws BadRequest {
+        if (journal == null) return;
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Journal flush failed: " + e);
+            throw new BadRequest(503, "Change made but not saved.");
+        }
+    }
+
+    static String required(Map<String, String> params, String name, String message)
+            throws BadRequest {
+        String value = params.getOrDefault(name, "").trim();
+        if (value.isEmpty()) throw new BadRequest(400, message);
+        return value;
+    }
+
+    static int number(String text, String what) throws BadRequest {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequest(400, "Invalid number for " + what + ".");
+        }
+    }
+
+    // Query string plus, for a POST, a form-encoded body
+    static Map<String, String> params(HttpExchange exchange) throws IOException, BadRequest {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        if (exchange.getRequestMethod().equals("POST")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] body = in.readNBytes(MAX_BODY + 1);
+                if (body.length > MAX_BODY) {
+                    throw new BadRequest(413, "Request body too large");
+                }
+                parseForm(new String(body, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> into) throws BadRequest {
+        if (form == null || form.isEmpty()) return;
+        try {
+            for (String pair : form.split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                into.put(key, value);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest(400, "Malformed parameters");
+        }
+    }
+
+    static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, json, "application/json; charset=utf-8");
+    }
+
+    static void sendText(HttpExchange exchange, String text) throws IOException {
+        send(exchange, 200, text, "text/plain; charset=utf-8");
+    }
+
+    // Text written as it's produced, for replies too big to build first
+    interface TextBody {
+        void write(Writer out) throws IOException;
+    }
+
+    static void sendText(HttpExchange exchange, TextBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // chunked
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16)) {
+            body.write(out);
+        }
+    }
+
+    static void send(HttpExchange exchange, int status, String text, String type) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    // The details (exception, file paths) stay in the server's log
+    static String internalError(HttpExchange exchange, Exception e) {
+        System.err.println(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " failed:");
+        e.printStackTrace();
+        return error("Internal error.");
+    }
+
+    // Two decimals like everywhere else; JSON has no NaN, so that's null
+    static String decimal(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    static String quote(String text) {
+        StringBuilder out = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary snapshot of the whole roster (students.roster by default).
+// Much smaller and faster than students.txt: no averages or letters, course
+// names stored once, counts as varints, one byte per grade.
+//
+//   "TCRS"  version:u8  journalGeneration:u64 (version 2+)
+//   courseCount:varint  { nameLength:varint  utf8 }*        course dictionary
+//   categoryCount:varint  { nameLength:varint  utf8 }*      (version 3+)
+//   studentCount:varint
+//   { id:varint  nameLength:varint  utf8  courseCount:varint
+//     { course:varint  gradeCount:varint  encoding:u8  grades  [categories] }* }*
+//
+// encoding bit 0: 0 = one unsigned byte per grade, 1 = zigzag varint per
+// grade (only used for courses holding grades outside 0-255). Bit 1 (version
+// 3+) means a category follows for every grade, one byte each: 0 for none,
+// else 1 + its index in the category dictionary.
+//
+// journalGeneration says which RosterJournal file is already folded into
+// this snapshot, so a journal from before the last compaction isn't replayed
+// twice. Version 1 files have no such field and count as generation 0.
+class RosterSnapshot {
+
+    static final byte[] MAGIC = {'T', 'C', 'R', 'S'};
+    static final int VERSION = 3;
+
+    static final class Contents {
+        final List<Student> students;
+        final long journalGeneration;
+
+        Contents(List<Student> students, long journalGeneration) {
+            this.students = students;
+            this.journalGeneration = journalGeneration;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BYTE_GRADES = 0;
+    private static final int VARINT_GRADES = 1;
+    private static final int CATEGORIZED = 2;
+
+    // ===== WRITING =====
+
+    // The students must not change while this runs; the journal calls it
+    // under StudentRegistry.lockExclusive()
+    static void write(List<Student> students, Path target) throws IOException {
+        write(students, target, 0);
+    }
+
+    static void write(List<Student> students, Path target, long journalGeneration) throws IOException {
+        RosterMetrics.BulkEvent event = new RosterMetrics.BulkEvent();
+        event.begin();
+        long start = RosterMetrics.start(RosterMetrics.Op.SNAPSHOT);
+        AtomicFile.write(target, channel -> new Writer(channel).writeAll(students, journalGeneration));
+        RosterMetrics.record(RosterMetrics.Op.SNAPSHOT, start);
+        if (event.shouldCommit()) {
+            event.operation = "snapshot";
+            event.file = target.toString();
+            event.rows = students.size();
+            event.commit();
+        }
+    }
+
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeAll(List<Student> students, long journalGeneration) throws IOException {
+            // Dictionary holds only the courses somebody is actually in,
+            // renumbered densely from 0
+            Map<Integer, Integer> fileIds = new HashMap<>();
+            List<String> dictionary = new ArrayList<>();
+            // categories likewise, numbered from 1 (0 = none)
+            int[] categoryIds = new int[GradeCategories.MAX + 1];
+            List<String> categories = new ArrayList<>();
+            for (Student s : students) {
+                for (int c = 0; c < s.courseCount(); c++) {
+                    if (fileIds.putIfAbsent(s.courseId(c), dictionary.size()) == null) {
+                        dictionary.add(s.courseName(c));
+                    }
+                    GradeList grades = s.gradesAt(c);
+                    if (!grades.hasCategories()) continue;
+                    for (int i = 0; i < grades.size(); i++) {
+                        int category = grades.category(i);
+                        if (category != GradeCategories.NONE && categoryIds[category] == 0) {
+                            categories.add(GradeCategories.name(category));
+                            categoryIds[category] = categories.size();
+                        }
+                    }
+                }
+            }
+
+            put(MAGIC);
+            putByte(VERSION);
+            ensureRoom(8);
+            buffer.putLong(journalGeneration);
+            putVarint(dictionary.size());
+            for (String course : dictionary) {
+                putString(course);
+            }
+            putVarint(categories.size());
+            for (String category : categories) {
+                putString(category);
+            }
+
+            putVarint(students.size());
+            for (Student s : students) {
+                putVarint(s.id());
+                putString(s.name);
+                putVarint(s.courseCount());
+                for (int c = 0; c < s.courseCount(); c++) {
+                    GradeList grades = s.gradesAt(c);
+                    putVarint(fileIds.get(s.courseId(c)));
+                    putVarint(grades.size());
+                    boolean fitsInBytes = grades.isEmpty() || (grades.min() >= 0 && grades.max() <= 255);
+                    boolean categorized = grades.hasCategories();
+                    putByte((fitsInBytes ? BYTE_GRADES : VARINT_GRADES) | (categorized ? CATEGORIZED : 0));
+                    for (int i = 0; i < grades.size(); i++) {
+                        if (fitsInBytes) {
+                            putByte(grades.get(i));
+                        } else {
+                            int g = grades.get(i);
+                            putVarint((g << 1) ^ (g >> 31));
+                        }
+                    }
+                    if (categorized) {
+                        for (int i = 0; i < grades.size(); i++) {
+                            putByte(categoryIds[grades.category(i)]);
+                        }
+                    }
+                }
+            }
+            flush();
+        }
+
+        private void putString(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            putVarint(bytes.length);
+            put(bytes);
+        }
+
+        private void putVarint(int value) throws IOException {
+            ensureRoom(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void putByte(int value) throws IOException {
+            ensureRoom(1);
+            buffer.put((byte) value);
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) channel.write(wrapped);
+                return;
+            }
+            ensureRoom(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    // ===== READING =====
+
+    // True if the file starts with the snapshot magic bytes
+    static boolean isSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+            while (head.hasRemaining() && channel.read(head) > 0) {
+                // keep reading until we have the magic or hit EOF
+            }
+            return !head.hasRemaining() && Arrays.equals(head.array(), MAGIC);
+        }
+    }
+
+    // Reads every student back, detached and with their saved IDs
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Reader(channel).readAll();
+        }
+    }
+
+    private static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip(); // start empty
+        }
+
+        Contents readAll() throws IOException {
+            byte[] magic = bytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a roster snapshot");
+            }
+            int version = readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long journalGeneration = 0;
+            if (version >= 2) {
+                for (int i = 0; i < 8; i++) {
+                    journalGeneration = (journalGeneration << 8) | readByte();
+                }
+            }
+
+            String[] dictionary = new String[readVarint()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString();
+            }
+            // category IDs by file number; 0 stays NONE
+            int[] categories = new int[1];
+            if (version >= 3) {
+                categories = new int[readVarint() + 1];
+                for (int i = 1; i < categories.length; i++) {
+                    categories[i] = GradeCategories.intern(readString());
+                }
+            }
+
+            int count = readVarint();
+            List<Student> students = new ArrayList<>(count);
+            for (int n = 0; n < count; n++) {
+                int id = readVarint();
+                Student s = new Student(readString(), id);
+                int courses = readVarint();
+                for (int c = 0; c < courses; c++) {
+                    int course = readVarint();
+                    if (course < 0 || course >= dictionary.length) {
+                        throw new IOException("Bad course reference " + course);
+                    }
+                    GradeList grades = s.openCourse(dictionary[course]);
+                    int gradeCount = readVarint();
+                    int encoding = readByte();
+                    if ((encoding & CATEGORIZED) == 0) {
+                        for (int i = 0; i < gradeCount; i++) {
+                            grades.add(readGrade(encoding));
+                        }
+                        continue;
+                    }
+                    int[] values = new int[gradeCount];
+                    for (int i = 0; i < gradeCount; i++) {
+                        values[i] = readGrade(encoding);
+                    }
+                    for (int i = 0; i < gradeCount; i++) {
+                        int category = readByte();
+                        if (category >= categories.length) {
+                            throw new IOException("Bad category reference " + category);
+                        }
+                        grades.add(values[i], categories[category]);
+                    }
+                }
+                students.add(s);
+            }
+            return new Contents(students, journalGeneration);
+        }
+
+        private int readGrade(int encoding) throws IOException {
+            if ((encoding & VARINT_GRADES) == 0) return readByte();
+            int z = readVarint();
+            return (z >>> 1) ^ -(z & 1);
+        }
+
+        private String readString() throws IOException {
+            return new String(bytes(readVarint()), StandardCharsets.UTF_8);
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private int readByte() throws IOException {
+            if (!buffer.hasRemaining()) fill();
+            return buffer.get() & 0xFF;
+        }
+
+        private byte[] bytes(int length) throws IOException {
+            byte[] out = new byte[length];
+            int done = 0;
+            while (done < length) {
+                if (!buffer.hasRemaining()) fill();
+                int n = Math.min(buffer.remaining(), length - done);
+                buffer.get(out, done, n);
+                done += n;
+            }
+            return out;
+        }
+
+        private void fill() throws IOException {
+            buffer.clear();
+            int n = channel.read(buffer);
+            buffer.flip();
+            if (n <= 0) throw new EOFException("Snapshot ends early");
+        }
+    }
+}
@@ -0,0 +1,353 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// The console's student x course table (Display All Students), rendered
+// into one reused char buffer that is drained to the Writer when full. Like
+// RosterExporter there's no printf in the loop: columns are padded by hand
+// and the two-decimal average comes from CourseAverage, with the same
+// digits %.2f would give.
+//
+// A Filter narrows the rows by course, letter grade and name prefix; a name
+// prefix reads the sorted name index and a course the course index, so a
+// narrow filter doesn't walk the whole roster. With a page size the table
+// stops after each page (pages break between students) and asks the Pager
+// whether to go on.
+//
+// A shard of a sharded roster sends its part of the table as bare rows
+// (printRows: ID, name, course and average cell, tab-separated) and the
+// router lays the shards' rows out as one table (printMerged), in the order
+// a single roster would list them.
+class RosterTable {
+
+    // Called after each page; false stops the table there
+    interface Pager {
+        boolean more(int shown) throws IOException;
+    }
+
+    // Parsed from "course=Math, letter=B, name=an, page=50"; blank = no filter
+    static final class Filter {
+        String course = "";
+        String letter = "";
+        String namePrefix = "";
+        int pageSize = -1; // -1 = the caller's default, 0 = no paging
+
+        static Filter parse(String text) {
+            Filter filter = new Filter();
+            for (String part : text.split(",")) {
+                part = part.trim();
+                if (part.isEmpty()) continue;
+                int eq = part.indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Filters look like course=Math, letter=B, name=An, page=20.");
+                }
+                String key = part.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+                String value = part.substring(eq + 1).trim();
+                switch (key) {
+                    case "course":
+                        filter.course = value;
+                        break;
+                    case "letter":
+                        filter.letter = value;
+                        break;
+                    case "name":
+                        filter.namePrefix = value;
+                        break;
+                    case "page":
+                        try {
+                            filter.pageSize = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            filter.pageSize = -2;
+                        }
+                        if (filter.pageSize < 0) {
+                            throw new IllegalArgumentException("Page size must be a whole number (0 for no paging).");
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown filter: " + key);
+                }
+            }
+            return filter;
+        }
+
+        boolean isEmpty() {
+            return course.isEmpty() && letter.isEmpty() && namePrefix.isEmpty();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 14;
+    private static final int NAME_WIDTH = 20;
+    private static final int COURSE_WIDTH = 15;
+    private static final int AVERAGE_WIDTH = 9;
+    private static final String NEWLINE = System.lineSeparator();
+    private static final String BORDER = "+----------------------+-----------------+-----------+";
+
+    private final Writer out;
+    private final boolean bare;  // rows only, for the router (printRows)
+    private int rowId;           // student whose rows are being written, when bare
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private final char[] digits = new char[20];
+    private final CourseAverage average = new CourseAverage();
+    private long pagerNanos; // spent waiting on the Pager, left out of the timing
+
+    private RosterTable(Writer out, boolean bare) {
+        this.out = out;
+        this.bare = bare;
+    }
+
+    // Prints the table and returns the number of rows shown. pageSize 0
+    // prints everything in one go; pager may be null then.
+    static int print(StudentRegistry registry, Filter filter, Writer out, int pageSize, Pager pager)
+            throws IOException {
+        RosterTable table = new RosterTable(out, false);
+        long start = RosterMetrics.start(RosterMetrics.Op.DISPLAY_ALL);
+        int shown = table.render(registry, filter, pageSize, pager);
+        RosterMetrics.record(RosterMetrics.Op.DISPLAY_ALL, start + table.pagerNanos);
+        return shown;
+    }
+
+    // The rows print() would show, one per line as
+    // "<id> TAB <name> TAB <course> TAB <average cell>", names and courses
+    // escaped by TabFields.field. No borders, paging or count.
+    static int printRows(StudentRegistry registry, Filter filter, Writer out) throws IOException {
+        return new RosterTable(out, true).render(registry, filter, 0, null);
+    }
+
+    // One table from every shard's printRows(), merged into the order one
+    // roster would show them in: by name for a name filter, else by ID.
+    // Each shard's rows are already in that order, and a student's rows all
+    // come from one shard, so a k-way merge is enough.
+    static int printMerged(List<BufferedReader> shards, Filter filter, Writer out) throws IOException {
+        RosterTable table = new RosterTable(out, false);
+        boolean byName = !filter.namePrefix.isEmpty();
+        Comparator<String[]> order = Comparator.comparingInt(row -> Integer.parseInt(row[0]));
+        if (byName) {
+            order = Comparator.<String[], String>comparing(row -> StudentRegistry.key(row[1])).thenComparing(order);
+        }
+        PriorityQueue<String[]> heads = new PriorityQueue<>(order);
+        Map<String[], BufferedReader> from = new IdentityHashMap<>();
+        for (BufferedReader shard : shards) {
+            table.next(shard, heads, from);
+        }
+
+        table.putLine(BORDER);
+        table.putRow("Student Name", "Course", "Average");
+        table.putLine(BORDER);
+        int shown = 0;
+        while (!heads.isEmpty()) {
+            String[] row = heads.poll();
+            table.putRow(row[1], row[2], row[3]);
+            shown++;
+            table.next(from.remove(row), heads, from);
+        }
+        table.putLine(BORDER);
+        if (!filter.isEmpty()) {
+            table.putLine(shown == 1 ? "1 row matched." : shown + " rows matched.");
+        }
+        table.drain();
+        out.flush();
+        return shown;
+    }
+
+    private void next(BufferedReader shard, PriorityQueue<String[]> heads, Map<String[], BufferedReader> from)
+            throws IOException {
+        String line = shard.readLine();
+        if (line == null || line.isEmpty()) return;
+        String[] row = TabFields.fields(line);
+        if (row.length != 4) throw new IOException("Malformed table row from a shard");
+        heads.add(row);
+        from.put(row, shard);
+    }
+
+    private int render(StudentRegistry registry, Filter filter, int pageSize, Pager pager) throws IOException {
+        int courseId = -1;
+        if (!filter.course.isEmpty()) {
+            courseId = CourseNames.find(filter.course);
+        }
+
+        List<Student> source;
+        if (!filter.namePrefix.isEmpty()) {
+            source = registry.findByPrefix(filter.namePrefix, Integer.MAX_VALUE);
+        } else if (!filter.course.isEmpty()) {
+            source = registry.studentsIn(filter.course);
+        } else {
+            source = registry.all();
+        }
+
+        if (!bare) {
+            putLine(BORDER);
+            putRow("Student Name", "Course", "Average");
+            putLine(BORDER);
+        }
+
+        int shown = 0;
+        int pageEnd = pageSize;
+        if (filter.course.isEmpty() || courseId >= 0) {
+            for (int i = 0; i < source.size(); i++) {
+                shown += writeStudent(source.get(i), filter, courseId);
+                if (pageSize > 0 && shown >= pageEnd && i + 1 < source.size()) {
+                    drain();
+                    out.flush();
+                    long asked = System.nanoTime();
+                    boolean more = pager.more(shown);
+                    pagerNanos += System.nanoTime() - asked;
+                    if (!more) break;
+                    pageEnd = shown + pageSize;
+                }
+            }
+        }
+
+        if (!bare) {
+            putLine(BORDER);
+            if (!filter.isEmpty()) {
+                putLine(shown == 1 ? "1 row matched." : shown + " rows matched.");
+            }
+        }
+        drain();
+        out.flush();
+        return shown;
+    }
+
+    // All of one student's rows are from the same moment: no grade change
+    // gets in between them
+    private int writeStudent(Student s, Filter filter, int courseId) throws IOException {
+        synchronized (s) {
+            rowId = s.id();
+            if (!s.hasCourses()) {
+                if (courseId >= 0 || !filter.letter.isEmpty()) return 0;
+                putRow(s.name, "No courses", "-");
+                return 1;
+            }
+            int rows = 0;
+            for (int c = 0; c < s.courseCount(); c++) {
+                if (courseId >= 0 && s.courseId(c) != courseId) continue;
+                average.of(s, c);
+                String letter = average.letter();
+                if (!filter.letter.isEmpty() && !filter.letter.equalsIgnoreCase(letter)) continue;
+
+                int start = startRow(s.name, s.courseName(c), letter.length());
+                byte[] text = average.text();
+                for (int i = 0; i < average.length(); i++) buffer[pos++] = (char) text[i];
+                put(' ');
+                put('(');
+                put(letter);
+                put(')');
+                endRow(start);
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    // ===== ROWS =====
+
+    // "| name | course | average |" with the same padding as
+    // printf("| %-20s | %-15s | %-9s |"): short values are padded, long ones
+    // push the columns out rather than being cut
+    private void putRow(String name, String course, String average) throws IOException {
+        int start = startRow(name, course, average.length());
+        put(average);
+        endRow(start);
+    }
+
+    // Writes everything up to the average and returns where the average
+    // starts, so endRow can pad it. Leaves room for the rest of the row, so
+    // the buffer isn't drained before endRow.
+    private int startRow(String name, String course, int letterLength) throws IOException {
+        if (bare) {
+            putLong(rowId);
+            put('\t');
+            put(TabFields.field(name));
+            put('\t');
+            put(TabFields.field(course));
+            put('\t');
+            ensureRoom(64 + letterLength);
+            return pos;
+        }
+        put('|');
+        put(' ');
+        putPadded(name, NAME_WIDTH);
+        put(" | ");
+        putPadded(course, COURSE_WIDTH);
+        put(" | ");
+        ensureRoom(64 + letterLength);
+        return pos;
+    }
+
+    // The average is still in the buffer at `start` (see startRow)
+    private void endRow(int start) throws IOException {
+        if (bare) {
+            put('\n');
+            return;
+        }
+        pad(AVERAGE_WIDTH - (pos - start));
+        put(" |");
+        put(NEWLINE);
+    }
+
+    private void putLine(String line) throws IOException {
+        put(line);
+        put(NEWLINE);
+    }
+
+    // ===== BUFFER HELPERS =====
+
+    private void putPadded(String text, int width) throws IOException {
+        put(text);
+        pad(width - text.length());
+    }
+
+    private void pad(int spaces) throws IOException {
+        if (spaces <= 0) return;
+        ensureRoom(spaces);
+        Arrays.fill(buffer, pos, pos + spaces, ' ');
+        pos += spaces;
+    }
+
+    private void putLong(long value) throws IOException {
+        int at = digits.length;
+        do {
+            digits[--at] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        ensureRoom(digits.length - at);
+        System.arraycopy(digits, at, buffer, pos, digits.length - at);
+        pos += digits.length - at;
+    }
+
+    private void put(char c) throws IOException {
+        ensureRoom(1);
+        buffer[pos++] = c;
+    }
+
+    private void put(String text) throws IOException {
+        int length = text.length();
+        if (length > buffer.length) {
+            drain();
+            out.write(text);
+            return;
+        }
+        ensureRoom(length);
+        text.getChars(0, length, buffer, pos);
+        pos += length;
+    }
+
+    private void ensureRoom(int chars) throws IOException {
+        if (buffer.length - pos < chars) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, pos);
+        pos = 0;
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+// Table model behind the Roster tab: one row per (student, course), or a
+// single "No courses" row for a student without grades - the same rows the
+// old Display All Students text dump had.
+//
+// Rows only remember the student and the course ID. Averages and letters
+// are worked out when the table asks for a cell, i.e. for the rows on
+// screen (and once per row when sorting), and cached until that row's
+// grades change.
+//
+// Roster changes arrive on whatever thread made them. They are queued and
+// applied on the EDT in batches; small batches fire row-level events, a
+// big one (a file load, a bulk import) fires a single dataChanged.
+class RosterTableModel extends AbstractTableModel implements RosterListener {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int NAME = 0;
+    static final int COURSE = 1;
+    static final int AVERAGE = 2;
+    static final int LETTER = 3;
+
+    private static final String[] COLUMNS = {"Student Name", "Course", "Average", "Letter"};
+    private static final int NO_COURSE = -1;
+
+    // Above this many queued changes, refresh the whole table at once
+    private static final int ROW_EVENTS_LIMIT = 500;
+
+    private static final class Row {
+        final Student student;
+        int courseId;  // NO_COURSE for the placeholder row
+        int index;     // position in rows
+        double average = Double.NaN; // NaN = not worked out yet
+
+        Row(Student student, int courseId) {
+            this.student = student;
+            this.courseId = courseId;
+        }
+    }
+
+    private final StudentRegistry registry;
+
+    // EDT only
+    private final ArrayList<Row> rows = new ArrayList<>();
+    private final Map<Student, List<Row>> rowsOf = new IdentityHashMap<>();
+
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private boolean bulk;       // current drain fires one dataChanged at the end
+    private boolean compactDue; // bulk drain left removed rows in place
+
+    // May be built on any thread; from then on it belongs to the EDT
+    RosterTableModel(StudentRegistry registry) {
+        this.registry = registry;
+        // Nothing can change between taking the copy and listening
+        registry.lockExclusive();
+        try {
+            for (Student s : registry.all()) {
+                addRows(s);
+            }
+            registry.addListener(this);
+        } finally {
+            registry.unlockExclusive();
+        }
+    }
+
+    // Stop following the roster (e.g. when the window closes)
+    void detach() {
+        registry.removeListener(this);
+    }
+
+    Student studentAt(int row) {
+        return rows.get(row).student;
+    }
+
+    // ===== TABLE MODEL =====
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == AVERAGE ? Double.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int column) {
+        Row row = rows.get(rowIndex);
+        switch (column) {
+            case NAME:
+                return row.student.name;
+            case COURSE:
+                return row.courseId == NO_COURSE ? "No courses" : CourseNames.name(row.courseId);
+            case AVERAGE:
+                return row.courseId == NO_COURSE ? null : average(row);
+            default:
+                return row.courseId == NO_COURSE
+                        ? "-"
+                        : GradingScale.forCourse(CourseNames.name(row.courseId)).letter(average(row));
+        }
+    }
+
+    private double average(Row row) {
+        if (Double.isNaN(row.average)) {
+            row.average = row.student.calculateAverage(CourseNames.name(row.courseId));
+        }
+        return row.average;
+    }
+
+    // ===== ROSTER CHANGES (any thread) =====
+
+    @Override
+    public void studentAdded(Student student) {
+        post(() -> {
+            int first = rows.size();
+            addRows(student);
+            inserted(first, rows.size() - 1);
+        });
+    }
+
+    @Override
+    public void studentRenamed(Student student, String oldName) {
+        post(() -> {
+            List<Row> mine = rowsOf.get(student);
+            if (mine == null) return;
+            for (Row row : mine) updated(row);
+        });
+    }
+
+    @Override
+    public void studentRemoved(Student student) {
+        post(() -> {
+            List<Row> mine = rowsOf.remove(student);
+            if (mine == null) return;
+            for (Row row : new ArrayList<>(mine)) removeRow(row);
+        });
+    }
+
+    @Override
+    public void rosterCleared(List<Student> removed) {
+        post(() -> {
+            rows.clear();
+            rowsOf.clear();
+            compactDue = false;
+            bulk = true;
+        });
+    }
+
+    @Override
+    public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+        post(() -> {
+            List<Row> mine = rowsOf.get(student);
+            if (mine == null) return;
+            int courseId = CourseNames.find(course);
+            Row row = find(mine, courseId);
+            if (row != null) {
+                row.average = Double.NaN;
+                updated(row);
+            } else if (mine.size() == 1 && mine.get(0).courseId == NO_COURSE) {
+                // First grade: the placeholder becomes the course row
+                row = mine.get(0);
+                row.courseId = courseId;
+                row.average = Double.NaN;
+                updated(row);
+            } else {
+                row = appendRow(student, courseId);
+                inserted(row.index, row.index);
+            }
+        });
+    }
+
+    // An empty course gets its row the same way
+    @Override
+    public void courseAdded(Student student, String course, int slot) {
+        gradeAdded(student, course, 0, "", true);
+    }
+
+    @Override
+    public void gradeEdited(Student student, String course, int index, int oldGrade, int newGrade) {
+        gradesChanged(student, course);
+    }
+
+    @Override
+    public void gradeRemoved(Student student, String course, int index, int oldGrade, String category) {
+        gradesChanged(student, course);
+    }
+
+    @Override
+    public void courseRemoved(Student student, String course, int slot, GradeList grades) {
+        post(() -> {
+            List<Row> mine = rowsOf.get(student);
+            if (mine == null) return;
+            Row row = find(mine, CourseNames.find(course));
+            if (row == null) return;
+            if (mine.size() == 1) {
+                row.courseId = NO_COURSE;
+                updated(row);
+            } else {
+                mine.remove(row);
+                removeRow(row);
+            }
+        });
+    }
+
+    private void gradesChanged(Student student, String course) {
+        post(() -> {
+            List<Row> mine = rowsOf.get(student);
+            Row row = mine == null ? null : find(mine, CourseNames.find(course));
+            if (row == null) return;
+            row.average = Double.NaN;
+            updated(row);
+        });
+    }
+
+    // ===== EDT SIDE =====
+
+    private void post(Runnable change) {
+        pending.add(change);
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        bulk = pending.size() > ROW_EVENTS_LIMIT;
+
+        Runnable change;
+        while ((change = pending.poll()) != null) {
+            change.run();
+        }
+
+        if (compactDue) {
+            rows.removeIf(row -> row.index < 0);
+            renumberFrom(0);
+            compactDue = false;
+        }
+        if (bulk) {
+            fireTableDataChanged();
+        }
+    }
+
+    private void addRows(Student student) {
+        synchronized (student) {
+            if (!student.hasCourses()) {
+                appendRow(student, NO_COURSE);
+            }
+            for (int c = 0; c < student.courseCount(); c++) {
+                appendRow(student, student.courseId(c));
+            }
+        }
+    }
+
+    private Row appendRow(Student student, int courseId) {
+        Row row = new Row(student, courseId);
+        row.index = rows.size();
+        rows.add(row);
+        rowsOf.computeIfAbsent(student, s -> new ArrayList<>(2)).add(row);
+        return row;
+    }
+
+    // Removing from the middle shifts later rows down. A bulk drain only
+    // marks the row and squeezes them all out once at the end.
+    private void removeRow(Row row) {
+        if (bulk) {
+            row.index = -1;
+            compactDue = true;
+            return;
+        }
+        int index = row.index;
+        rows.remove(index);
+        renumberFrom(index);
+        fireTableRowsDeleted(index, index);
+    }
+
+    private void renumberFrom(int from) {
+        for (int i = from; i < rows.size(); i++) {
+            rows.get(i).index = i;
+        }
+    }
+
+    private void inserted(int first, int last) {
+        if (!bulk && first <= last) {
+            fireTableRowsInserted(first, last);
+        }
+    }
+
+    private void updated(Row row) {
+        if (!bulk) {
+            fireTableRowsUpdated(row.index, row.index);
+        }
+    }
+
+    private static Row find(List<Row> rows, int courseId) {
+        if (courseId < 0) return null;
+        for (Row row : rows) {
+            if (row.courseId == courseId) return row;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,461 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A roster split across several worker JVMs on this host. Each worker is a
+// shard: an ordinary RosterServer ("GroupProject shard <i> <n> <port>") with
+// its own students.roster and journal in shards/shard-<i>/, holding the
+// students whose ID hashes to it:
+//
+//   shard = (id - 1) mod n
+//
+// Shards hand out only IDs that hash to themselves (see
+// StudentRegistry.partition), so an ID is never reused and routing a
+// request needs nothing but the ID.
+//
+// The router takes the same HTTP requests as RosterServer and
+//  - sends anything about one student (/students/{id}/...) to its shard
+//  - deals new students out to the shards in turn, which keeps them even
+//  - runs listings, /table and /statistics scatter-gather: every shard
+//    works out its part at once and the router merges them (names by name,
+//    table rows in roster order, statistics from mergeable sums and bins),
+//    so the reply is the one a single roster would give
+// Shards are reached over HTTP on 127.0.0.1 with kept-alive connections.
+//
+// The router starts the workers itself (same java, same class path), waits
+// until each answers and restarts any that dies; the journal means a
+// restarted shard has lost nothing that was acknowledged. Workers stop when
+// the router does. On the first start, an existing roster in the working
+// directory is split between the new shards (and left there as it was).
+class ShardRouter {
+
+    static final int DEFAULT_SHARDS = 4;
+    static final String DIRECTORY = "shards";
+
+    private static final int BACKLOG = 4096;
+    private static final Duration SHARD_TIMEOUT = Duration.ofSeconds(30);
+    private static final long START_MILLIS = 60_000; // for a worker to start answering
+    private static final String[] COPIED = {"grading.properties"}; // shared settings
+
+    // One worker JVM
+    private static final class Shard {
+        final int index;
+        final Path dir;
+        final int port;
+        final URI base;
+        volatile Process process;
+
+        Shard(int index, Path dir, int port) {
+            this.index = index;
+            this.dir = dir;
+            this.port = port;
+            this.base = URI.create("http://127.0.0.1:" + port);
+        }
+    }
+
+    private final Shard[] shards;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final AtomicInteger nextShard = new AtomicInteger(); // for new students
+    private volatile boolean stopping;
+    private HttpServer server;
+    private ExecutorService requests;
+
+    // Shard i listens on port firstShardPort + i
+    ShardRouter(int count, int firstShardPort) {
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, Paths.get(DIRECTORY, "shard-" + i), firstShardPort + i);
+        }
+    }
+
+    // The shard that owns a student ID
+    static int owner(int id, int shards) {
+        return Math.floorMod(id - 1, shards);
+    }
+
+    // ===== WORKERS =====
+
+    // Creates the shard directories (splitting `existing`, the roster found
+    // in the working directory, between them on the first start), starts
+    // the workers and waits until every one answers
+    void startShards(List<Student> existing, String snapshotFile) throws IOException {
+        Path root = Paths.get(DIRECTORY);
+        if (Files.isDirectory(root)) {
+            int found;
+            try (var dirs = Files.list(root)) {
+                found = (int) dirs.filter(d -> d.getFileName().toString().matches("shard-\\d+")).count();
+            }
+            if (found != 0 && found != shards.length) {
+                throw new IOException(root + " holds " + found + " shards; start the router with "
+                        + found + " shards or move " + root + " away");
+            }
+        }
+        if (!Files.isDirectory(shards[0].dir)) {
+            split(existing, snapshotFile);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stopShards));
+        for (Shard shard : shards) {
+            launch(shard);
+        }
+        for (Shard shard : shards) {
+            awaitReady(shard);
+        }
+    }
+
+    // Gives each new shard a snapshot of the students it owns
+    private void split(List<Student> existing, String snapshotFile) throws IOException {
+        List<List<Student>> parts = new ArrayList<>();
+        for (Shard shard : shards) {
+            Files.createDirectories(shard.dir);
+            parts.add(new ArrayList<>());
+        }
+        if (existing.isEmpty()) return;
+        for (Student s : existing) {
+            parts.get(owner(s.id(), shards.length)).add(s);
+        }
+        for (Shard shard : shards) {
+            RosterSnapshot.write(parts.get(shard.index), shard.dir.resolve(snapshotFile));
+        }
+        System.out.println("Split " + existing.size() + " students between " + shards.length
+                + " shards in " + DIRECTORY + "/");
+    }
+
+    private void launch(Shard shard) throws IOException {
+        for (String name : COPIED) {
+            Path file = Paths.get(name);
+            if (Files.exists(file)) {
+                Files.copy(file, shard.dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        String options = System.getProperty("roster.shard.options", "").trim();
+        if (!options.isEmpty()) command.addAll(Arrays.asList(options.split("\\s+")));
+        command.add("-Droster.shard.router=" + ProcessHandle.current().pid());
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        command.add(GroupProject.class.getName());
+        command.add("shard");
+        command.add(String.valueOf(shard.index));
+        command.add(String.valueOf(shards.length));
+        command.add(String.valueOf(shard.port));
+
+        Process process = new ProcessBuilder(command)
+                .directory(shard.dir.toFile())
+                .inheritIO()
+                .start();
+        shard.process = process;
+        // A second's pause, so a shard that can't start doesn't spin
+        process.onExit().thenRunAsync(() -> {
+            if (stopping || shard.process != process) return;
+            System.err.println("Shard " + shard.index + " exited (" + process.exitValue() + "); restarting it");
+            try {
+                launch(shard);
+            } catch (IOException e) {
+                System.err.println("Could not restart shard " + shard.index + ": " + e.getMessage());
+            }
+        }, CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS));
+    }
+
+    // Workers run in their shard's directory, so relative entries won't do
+    private static String absoluteClassPath() {
+        StringBuilder path = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (path.length() > 0) path.append(File.pathSeparatorChar);
+            path.append(Paths.get(entry).toAbsolutePath());
+        }
+        return path.toString();
+    }
+
+    private void awaitReady(Shard shard) throws IOException {
+        long deadline = System.currentTimeMillis() + START_MILLIS;
+        HttpRequest ping = HttpRequest.newBuilder(shard.base.resolve("/shard/names?limit=0"))
+                .timeout(SHARD_TIMEOUT).build();
+        while (true) {
+            try {
+                if (client.send(ping, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (ConnectException e) {
+                // not listening yet
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting shard " + shard.index);
+            }
+            if (!shard.process.isAlive() && shard.process.exitValue() != 0) {
+                stopShards();
+                throw new IOException("Shard " + shard.index + " failed to start (see above)");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                stopShards();
+                throw new IOException("Shard " + shard.index + " did not answer on port " + shard.port);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting shard " + shard.index);
+            }
+        }
+    }
+
+    // Workers close their journals on the way out (their shutdown hooks)
+    void stopShards() {
+        stopping = true;
+        for (Shard shard : shards) {
+            Process process = shard.process;
+            if (process != null) process.destroy();
+        }
+        for (Shard shard : shards) {
+            Process process = shard.process;
+            if (process == null) continue;
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // In a worker: exit when the router that started it is gone, however
+    // it went, so no orphaned shard holds on to its port and files
+    static void exitWithRouter() {
+        long router = Long.getLong("roster.shard.router", 0);
+        if (router == 0) return;
+        ProcessHandle.of(router).ifPresentOrElse(
+                handle -> handle.onExit().thenRun(() -> System.exit(0)),
+                () -> System.exit(0));
+    }
+
+    // ===== ROUTER =====
+
+    void start(String address, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(address, port), BACKLOG);
+        requests = RosterServer.requestExecutor();
+        server.setExecutor(requests);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    void stop(int seconds) {
+        server.stop(seconds);
+        requests.shutdown();
+        stopShards();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                String[] path = exchange.getRequestURI().getPath().split("/");
+                String method = exchange.getRequestMethod();
+                Map<String, String> params = RosterServer.params(exchange);
+                String top = path.length < 2 ? "" : path[1];
+                if (top.equals("table") && path.length == 2) {
+                    RosterServer.allow(exchange, "GET");
+                    table(exchange, params);
+                } else if (top.equals("statistics") && path.length == 2) {
+                    RosterServer.allow(exchange, "GET");
+                    RosterServer.sendText(exchange, statistics());
+                } else if (!top.equals("students") || path.length > 4) {
+                    throw new RosterServer.BadRequest(404, "Not found");
+                } else if (path.length == 2 && method.equals("GET")) {
+                    RosterServer.send(exchange, 200, listStudents(params));
+                } else if (path.length == 2 && method.equals("POST")) {
+                    int turn = Math.floorMod(nextShard.getAndIncrement(), shards.length);
+                    relay(exchange, forward(shards[turn], method, exchange.getRequestURI().getPath(), params));
+                } else if (path.length == 2) {
+                    throw RosterServer.notAllowed(exchange, "GET, POST");
+                } else {
+                    int id;
+                    try {
+                        id = Integer.parseInt(path[2]);
+                    } catch (NumberFormatException e) {
+                        throw new RosterServer.BadRequest(404, "No student with ID " + path[2] + ".");
+                    }
+                    Shard owner = shards[owner(id, shards.length)];
+                    relay(exchange, forward(owner, method, exchange.getRequestURI().getPath(), params));
+                }
+            } catch (RosterServer.BadRequest e) {
+                RosterServer.send(exchange, e.status, RosterServer.error(e.getMessage()));
+            } catch (RuntimeException e) {
+                RosterServer.send(exchange, 500, RosterServer.internalError(exchange, e));
+            }
+        }
+    }
+
+    // ===== ONE SHARD =====
+
+    private HttpResponse<String> forward(Shard shard, String method, String path, Map<String, String> params)
+            throws RosterServer.BadRequest {
+        return await(shard, client.sendAsync(request(shard, method, path, params),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+    }
+
+    private static void relay(HttpExchange exchange, HttpResponse<String> response) throws IOException {
+        response.headers().firstValue("Allow").ifPresent(v -> exchange.getResponseHeaders().set("Allow", v));
+        RosterServer.send(exchange, response.statusCode(), response.body(),
+                response.headers().firstValue("Content-Type").orElse("application/json; charset=utf-8"));
+    }
+
+    // The parameters go on as a query string (GET) or form body (POST)
+    private HttpRequest request(Shard shard, String method, String path, Map<String, String> params) {
+        StringBuilder form = new StringBuilder();
+        for (Map.Entry<String, String> p : params.entrySet()) {
+            if (form.length() > 0) form.append('&');
+            form.append(URLEncoder.encode(p.getKey(), StandardCharsets.UTF_8)).append('=')
+                    .append(URLEncoder.encode(p.getValue(), StandardCharsets.UTF_8));
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder().timeout(SHARD_TIMEOUT);
+        if (method.equals("POST")) {
+            request.uri(shard.base.resolve(path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form.toString()));
+        } else {
+            request.uri(shard.base.resolve(form.length() == 0 ? path : path + "?" + form))
+                    .method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return request.build();
+    }
+
+    private static <T> HttpResponse<T> await(Shard shard, CompletableFuture<HttpResponse<T>> reply)
+            throws RosterServer.BadRequest {
+        try {
+            return reply.join();
+        } catch (CompletionException e) {
+            throw new RosterServer.BadRequest(503, "Shard " + shard.index + " is not answering ("
+                    + e.getCause() + ")");
+        }
+    }
+
+    // ===== ALL SHARDS =====
+
+    // Asks every shard at once; a shard's error reply is passed on as it is
+    private <T> List<HttpResponse<T>> scatter(String path, Map<String, String> params,
+                                              HttpResponse.BodyHandler<T> handler)
+            throws RosterServer.BadRequest {
+        List<CompletableFuture<HttpResponse<T>>> pending = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            pending.add(client.sendAsync(request(shard, "GET", path, params), handler));
+        }
+        List<HttpResponse<T>> replies = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            replies.add(await(shards[i], pending.get(i)));
+        }
+        for (HttpResponse<T> reply : replies) {
+            if (reply.statusCode() != 200) {
+                String message = reply.body() instanceof String ? (String) reply.body() : "";
+                for (HttpResponse<T> r : replies) {
+                    if (r.body() instanceof InputStream) close((InputStream) r.body());
+                }
+                throw new RosterServer.BadRequest(reply.statusCode() == 404 ? 404 : 502,
+                        "A shard answered " + reply.statusCode() + " " + message);
+            }
+        }
+        return replies;
+    }
+
+    private static void close(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // nothing more to read from it anyway
+        }
+    }
+
+    // Each shard's first `limit` by name; the first `limit` of all of those
+    // are the roster's
+    private String listStudents(Map<String, String> params) throws RosterServer.BadRequest {
+        int limit = RosterServer.DEFAULT_LIMIT;
+        if (params.containsKey("limit")) {
+            limit = RosterServer.number(params.get("limit"), "limit");
+            if (limit < 1 || limit > RosterServer.MAX_LIMIT) {
+                throw new RosterServer.BadRequest(400,
+                        "limit must be between 1 and " + RosterServer.MAX_LIMIT + ".");
+            }
+        }
+        Map<String, String> query = Map.of(
+                "prefix", params.getOrDefault("prefix", ""), "limit", String.valueOf(limit));
+        long total = 0;
+        List<String[]> found = new ArrayList<>();
+        for (HttpResponse<String> reply : scatter("/shard/names", query, HttpResponse.BodyHandlers.ofString())) {
+            String[] lines = reply.body().split("\n");
+            total += Long.parseLong(lines[0]);
+            for (int i = 1; i < lines.length; i++) {
+                if (!lines[i].isEmpty()) found.add(TabFields.fields(lines[i]));
+            }
+        }
+        found.sort(Comparator.<String[], String>comparing(s -> StudentRegistry.key(s[1]))
+                .thenComparingInt(s -> Integer.parseInt(s[0])));
+
+        StringBuilder json = new StringBuilder(32 + Math.min(limit, found.size()) * 32);
+        json.append("{\"total\":").append(total).append(",\"students\":[");
+        for (int i = 0; i < found.size() && i < limit; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(found.get(i)[0])
+                    .append(",\"name\":").append(RosterServer.quote(found.get(i)[1])).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    // Streams every shard's rows into one table as they arrive
+    private void table(HttpExchange exchange, Map<String, String> params)
+            throws RosterServer.BadRequest, IOException {
+        RosterTable.Filter filter = RosterServer.filter(params);
+        List<HttpResponse<InputStream>> replies =
+                scatter("/shard/rows", params, HttpResponse.BodyHandlers.ofInputStream());
+        List<BufferedReader> rows = new ArrayList<>(replies.size());
+        for (HttpResponse<InputStream> reply : replies) {
+            rows.add(new BufferedReader(new InputStreamReader(reply.body(), StandardCharsets.UTF_8), 1 << 16));
+        }
+        try {
+            RosterServer.sendText(exchange, out -> RosterTable.printMerged(rows, filter, out));
+        } finally {
+            for (BufferedReader r : rows) r.close();
+        }
+    }
+
+    private String statistics() throws RosterServer.BadRequest, IOException {
+        int shown = RosterServer.TOP_SHOWN;
+        RosterAnalytics.Summary summary = new RosterAnalytics.Summary(shown);
+        Map<String, String> query = Map.of("top", String.valueOf(shown));
+        for (HttpResponse<String> reply : scatter("/shard/statistics", query, HttpResponse.BodyHandlers.ofString())) {
+            summary.read(new BufferedReader(new StringReader(reply.body())));
+        }
+        return RosterAnalytics.text(summary, shown);
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+// Methods are synchronized on the student: that's the per-student lock
+// StudentRegistry takes for grade changes. A GradeList handed out by
+// grades()/gradesAt() is guarded by its student too - hold
+// synchronized (student) while reading one that others may be changing.
+class Student {
+    private int id; // stable, assigned by StudentRegistry (0 until registered)
+    volatile String name;
+    long storeRecord; // its GradeStore directory record, 0 if none (guarded by the store)
+
+    // Courses in the order they were first graded: courseIds[i] is the
+    // interned course name (see CourseNames), courseGrades[i] its grades.
+    private int[] courseIds = new int[0];
+    private GradeList[] courseGrades = new GradeList[0];
+    private int courseCount;
+
+    public Student(String name) {
+        this.name = name;
+    }
+
+    // A student read back from a file, who keeps the ID it was saved with
+    // when it's registered (0: gets a new one)
+    Student(String name, int id) {
+        if (id < 0) throw new IllegalArgumentException("Bad student ID " + id);
+        this.name = name;
+        this.id = id;
+    }
+
+    int id() {
+        return id;
+    }
+
+    // Only for StudentRegistry, when it registers a student without one
+    void assignId(int id) {
+        if (this.id != 0) {
+            throw new IllegalStateException(name + " already has ID " + this.id);
+        }
+        this.id = id;
+    }
+
+    // Only for a student no registry has yet (loaders building a roster):
+    // grades given this way reach no listener, so once the student is in a
+    // registry use StudentRegistry.addGrade
+    synchronized void addGrade(String course, int grade) {
+        openCourse(course).add(grade);
+    }
+
+    // category may be empty (see GradeCategories)
+    synchronized void addGrade(String course, int grade, String category) {
+        openCourse(course).add(grade, GradeCategories.intern(category));
+    }
+
+    // Weighted by category where the course has weights (see CourseRules)
+    public synchronized double calculateAverage(String course) {
+        long start = RosterMetrics.start(RosterMetrics.Op.CALCULATE_AVERAGE);
+        GradeList grades = grades(course);
+        double average = grades == null ? 0.0 : CourseRules.average(course, grades);
+        RosterMetrics.record(RosterMetrics.Op.CALCULATE_AVERAGE, start);
+        return average;
+    }
+
+    // Credit-weighted grade points over all graded courses; NaN if none count
+    public synchronized double gpa() {
+        return CourseRules.gpa(this);
+    }
+
+    public synchronized double gpaHours() {
+        return CourseRules.gpaHours(this);
+    }
+
+    // Grades for one course, or null if the student doesn't take it
+    synchronized GradeList grades(String course) {
+        int slot = slotOf(course);
+        return slot < 0 ? null : courseGrades[slot];
+    }
+
+    // Grades for one course, adding the course (with no grades) if needed
+    synchronized GradeList openCourse(String course) {
+        return openCourse(course, courseCount);
+    }
+
+    // Same, but a new course goes in at `slot` of the courses (clamped to
+    // the end) instead of last
+    synchronized GradeList openCourse(String course, int slot) {
+        GradeList grades = grades(course);
+        if (grades == null) {
+            grades = new GradeList();
+            addCourse(Math.min(Math.max(slot, 0), courseCount), CourseNames.intern(course), grades);
+        }
+        return grades;
+    }
+
+    // Adds a course whose grades already exist (opened from a GradeStore)
+    synchronized void addCourse(String course, GradeList grades) {
+        if (grades(course) != null) {
+            throw new IllegalArgumentException(name + " already takes " + course);
+        }
+        addCourse(courseCount, CourseNames.intern(course), grades);
+    }
+
+    synchronized int courseCount() {
+        return courseCount;
+    }
+
+    synchronized boolean hasCourses() {
+        return courseCount > 0;
+    }
+
+    synchronized int courseId(int slot) {
+        return courseIds[slot];
+    }
+
+    synchronized String courseName(int slot) {
+        return CourseNames.name(courseIds[slot]);
+    }
+
+    synchronized GradeList gradesAt(int slot) {
+        return courseGrades[slot];
+    }
+
+    // Where the course is in the student's courses, or -1
+    synchronized int courseSlot(String course) {
+        return slotOf(course);
+    }
+
+    synchronized String[] courseNames() {
+        String[] names = new String[courseCount];
+        for (int i = 0; i < courseCount; i++) {
+            names[i] = courseName(i);
+        }
+        return names;
+    }
+
+    // Returns the removed grades, or null if the student didn't take it
+    synchronized GradeList removeCourse(String course) {
+        int slot = slotOf(course);
+        if (slot < 0) return null;
+
+        GradeList removed = courseGrades[slot];
+        int tail = courseCount - slot - 1;
+        System.arraycopy(courseIds, slot + 1, courseIds, slot, tail);
+        System.arraycopy(courseGrades, slot + 1, courseGrades, slot, tail);
+        courseCount--;
+        courseGrades[courseCount] = null;
+        return removed;
+    }
+
+    private int slotOf(String course) {
+        int id = CourseNames.find(course);
+        if (id < 0) return -1;
+        for (int i = 0; i < courseCount; i++) {
+            if (courseIds[i] == id) return i;
+        }
+        return -1;
+    }
+
+    private void addCourse(int slot, int courseId, GradeList grades) {
+        if (courseCount == courseIds.length) {
+            int newLength = Math.max(4, courseCount * 2);
+            courseIds = Arrays.copyOf(courseIds, newLength);
+            courseGrades = Arrays.copyOf(courseGrades, newLength);
+        }
+        int tail = courseCount - slot;
+        System.arraycopy(courseIds, slot, courseIds, slot + 1, tail);
+        System.arraycopy(courseGrades, slot, courseGrades, slot + 1, tail);
+        courseIds[slot] = courseId;
+        courseGrades[slot] = grades;
+        courseCount++;
+    }
+
+    // Letter on the default scale, for an average that isn't tied to a course
+    public String convertToLetterGrade(double average) {
+        return GradingScale.defaultScale().letter(average);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,166 @@
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+// Type-ahead student chooser: type the start of a name and the list shows
+// the first few matches from StudentRegistry's sorted name index. Nothing
+// is built per student, so it opens instantly whatever the roster size.
+//
+// The search runs once typing pauses (DEBOUNCE_MS), not on every key.
+// Enter or double-click picks the highlighted student; Up/Down move the
+// highlight without leaving the text field.
+class StudentPicker extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MATCHES_SHOWN = 20;
+    private static final int DEBOUNCE_MS = 150;
+
+    private final StudentRegistry registry;
+    private final JTextField query = new JTextField(24);
+    private final DefaultListModel<Student> matches = new DefaultListModel<>();
+    private final JList<Student> list = new JList<>(matches);
+    private final Timer debounce;
+    private Student chosen;
+
+    // Shows the picker and waits; returns the chosen student, or null if
+    // the dialog was closed without choosing
+    static Student pick(Component parent, StudentRegistry registry, String message) {
+        StudentPicker picker = new StudentPicker(parent, registry, message);
+        picker.setVisible(true); // modal
+        return picker.chosen;
+    }
+
+    private StudentPicker(Component parent, StudentRegistry registry, String message) {
+        super(SwingUtilities.getWindowAncestor(parent), "Choose Student", ModalityType.APPLICATION_MODAL);
+        this.registry = registry;
+
+        debounce = new Timer(DEBOUNCE_MS, e -> search());
+        debounce.setRepeats(false);
+
+        query.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        query.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+                    moveSelection(1);
+                    e.consume();
+                } else if (e.getKeyCode() == KeyEvent.VK_UP) {
+                    moveSelection(-1);
+                    e.consume();
+                }
+            }
+        });
+        query.addActionListener(e -> {
+            // Enter straight after typing: don't wait for the timer
+            if (debounce.isRunning()) {
+                debounce.stop();
+                search();
+            }
+            choose();
+        });
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setVisibleRowCount(10);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index,
+                                                          boolean selected, boolean focused) {
+                Student s = (Student) value;
+                // The ID tells apart students who share a name
+                return super.getListCellRendererComponent(l, s.name + "  (#" + s.id() + ")",
+                        index, selected, focused);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) choose();
+            }
+        });
+
+        JButton okBtn = new JButton("OK");
+        JButton cancelBtn = new JButton("Cancel");
+        okBtn.addActionListener(e -> choose());
+        cancelBtn.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel();
+        buttons.add(okBtn);
+        buttons.add(cancelBtn);
+
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.add(new JLabel(message), BorderLayout.NORTH);
+        top.add(query, BorderLayout.CENTER);
+
+        JPanel content = new JPanel(new BorderLayout(5, 5));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(top, BorderLayout.NORTH);
+        content.add(new JScrollPane(list), BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        search(); // start with the top of the roster
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    private void search() {
+        List<Student> found = registry.findByPrefix(query.getText().trim(), MATCHES_SHOWN);
+        matches.clear();
+        for (Student s : found) {
+            matches.addElement(s);
+        }
+        if (!matches.isEmpty()) {
+            list.setSelectedIndex(0);
+        }
+    }
+
+    private void moveSelection(int step) {
+        if (matches.isEmpty()) return;
+        int next = Math.max(0, Math.min(matches.size() - 1, list.getSelectedIndex() + step));
+        list.setSelectedIndex(next);
+        list.ensureIndexIsVisible(next);
+    }
+
+    private void choose() {
+        Student selected = list.getSelectedValue();
+        if (selected == null) return;
+        chosen = selected;
+        debounce.stop();
+        dispose();
+    }
+}
@@ -0,0 +1,479 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Holds every student in insertion order, plus indexes next to the list:
+//  - case-folded name -> student (same matching rule as equalsIgnoreCase)
+//  - numeric ID -> student
+//  - case-folded names in sorted order, for type-ahead prefix search
+//  - course -> students who take it, so course queries cost the size of
+//    the course, not of the roster
+// Lookups are O(1), prefix searches O(log n + matches returned). Every
+// change to the roster - students and grades - must go through here so the
+// indexes never drift away from the list and every RosterListener hears
+// about it.
+//
+// Safe to use from many threads at once:
+//  - lookups read concurrent maps and take no lock
+//  - adding, renaming and removing students takes the write lock
+//  - grade changes take the read lock (shared) plus the student's own
+//    monitor, so threads working on different students run in parallel
+//  - lockExclusive() takes the write lock, which pauses every change, e.g.
+//    while the journal writes a snapshot
+// Lock order is always registry lock -> student -> listener. Listeners are
+// called while those locks are held, so they see changes to one student in
+// the order they happened.
+class StudentRegistry {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by the write lock
+    private final ArrayList<Student> students = new ArrayList<>();
+    private int nextId = 1;
+    private int shard;      // see partition()
+    private int shards = 1;
+
+    // Only names shared by 2+ students are kept here (name key -> how many
+    // extra students carry it). Lets us skip the rescan on rename/delete
+    // when a name is unique. Guarded by the write lock.
+    private final Map<String, Integer> duplicateNames = new HashMap<>();
+
+    // Written under the write lock, read without locking
+    private final Map<String, Student> byName = new ConcurrentHashMap<>();
+    private final Map<Integer, Student> byId = new ConcurrentHashMap<>();
+
+    // Every student, sorted by sortKey(): folded name, then ID. Unlike byName
+    // this keeps all students that share a name.
+    private final ConcurrentSkipListMap<String, Student> sorted = new ConcurrentSkipListMap<>();
+
+    // Course ID -> every student who has the course, even with no grades
+    // left in it. Changed under the write lock or, for one student's
+    // courses, under the read lock plus that student's monitor.
+    private final Map<Integer, Set<Student>> byCourse = new ConcurrentHashMap<>();
+
+    private final List<RosterListener> listeners = new CopyOnWriteArrayList<>();
+
+    void addListener(RosterListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(RosterListener listener) {
+        listeners.remove(listener);
+    }
+
+    Student add(String name) {
+        return add(new Student(name));
+    }
+
+    // Registers a student built elsewhere (e.g. by RosterLoader), grades and
+    // all. A student without an ID gets the next one; one that already has
+    // an ID keeps it, and goes back to its place in ID order if it's older
+    // than the newest (a deleted student being restored).
+    Student add(Student student) {
+        lock.writeLock().lock();
+        try {
+            if (student.id() == 0) {
+                student.assignId(nextId);
+                nextId = owned(nextId + 1);
+            } else if (byId.containsKey(student.id())) {
+                throw new IllegalStateException("Duplicate student ID " + student.id());
+            } else {
+                nextId = owned(Math.max(nextId, student.id() + 1));
+            }
+            int last = students.size() - 1;
+            if (last >= 0 && students.get(last).id() > student.id()) {
+                students.add(placeOf(student.id()), student);
+            } else {
+                students.add(student);
+            }
+            byId.put(student.id(), student);
+            indexName(student);
+            sorted.put(sortKey(student), student);
+            synchronized (student) {
+                for (int c = 0; c < student.courseCount(); c++) {
+                    enroll(student, student.courseId(c));
+                }
+            }
+            for (RosterListener l : listeners) l.studentAdded(student);
+            return student;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Makes this registry shard `shard` of `shards`: new students only get
+    // IDs with (id - 1) % shards == shard, so shards never hand out the same
+    // ID and an ID alone says which shard owns the student (see ShardRouter)
+    void partition(int shard, int shards) {
+        lock.writeLock().lock();
+        try {
+            this.shard = shard;
+            this.shards = shards;
+            nextId = owned(nextId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Same result as the old linear scan: the earliest added student whose
+    // name matches, ignoring case.
+    Student findByName(String name) {
+        if (name == null) return null;
+        long start = RosterMetrics.start(RosterMetrics.Op.FIND_BY_NAME);
+        Student found = byName.get(key(name));
+        RosterMetrics.record(RosterMetrics.Op.FIND_BY_NAME, start);
+        return found;
+    }
+
+    Student findById(int id) {
+        return byId.get(id);
+    }
+
+    // Up to limit students whose name starts with prefix (ignoring case),
+    // in name order. An empty prefix lists the roster from the top.
+    List<Student> findByPrefix(String prefix, int limit) {
+        String from = key(prefix);
+        List<Student> matches = new ArrayList<>(Math.min(limit, 64));
+        for (Student s : sorted.subMap(from, from + Character.MAX_VALUE).values()) {
+            if (matches.size() == limit) break;
+            matches.add(s);
+        }
+        return matches;
+    }
+
+    void rename(Student student, String newName) {
+        lock.writeLock().lock();
+        try {
+            String oldName = student.name;
+            unindexName(student);
+            sorted.remove(sortKey(student));
+            student.name = newName;
+            indexName(student);
+            sorted.put(sortKey(student), student);
+            for (RosterListener l : listeners) l.studentRenamed(student, oldName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove(Student student) {
+        lock.writeLock().lock();
+        try {
+            if (byId.remove(student.id()) == null) {
+                return false;
+            }
+            students.remove(student);
+            unindexName(student);
+            sorted.remove(sortKey(student));
+            synchronized (student) {
+                for (int c = 0; c < student.courseCount(); c++) {
+                    unenroll(student, student.courseId(c));
+                }
+            }
+            for (RosterListener l : listeners) l.studentRemoved(student);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forgets every student. IDs keep counting up so they're never reused.
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            List<Student> removed = new ArrayList<>(students);
+            students.clear();
+            byName.clear();
+            byId.clear();
+            sorted.clear();
+            byCourse.clear();
+            duplicateNames.clear();
+            for (RosterListener l : listeners) l.rosterCleared(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A copy of the roster in insertion order, safe to walk while other
+    // threads keep changing it
+    List<Student> all() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(students);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    // Pauses every change to the roster until unlockExclusive()
+    void lockExclusive() {
+        lock.writeLock().lock();
+    }
+
+    void unlockExclusive() {
+        lock.writeLock().unlock();
+    }
+
+    // Folds each character the way equalsIgnoreCase compares them (to upper
+    // case, then to lower case), so two names get the same key exactly when
+    // equalsIgnoreCase says they match - unlike toLowerCase, which maps 'İ'
+    // to two characters and leaves final sigma apart from sigma
+    static String key(String name) {
+        int i = 0;
+        while (i < name.length()) {
+            char c = name.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) break;
+            i++;
+        }
+        if (i == name.length()) return name; // nothing to fold
+        StringBuilder folded = new StringBuilder(name.length()).append(name, 0, i);
+        while (i < name.length()) {
+            int c = name.codePointAt(i);
+            folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c)));
+            i += Character.charCount(c);
+        }
+        return folded.toString();
+    }
+
+    // Everyone who has the course, in ID order
+    List<Student> studentsIn(String course) {
+        Set<Student> enrolled = byCourse.get(CourseNames.find(course));
+        if (enrolled == null) return new ArrayList<>();
+        List<Student> list = new ArrayList<>(enrolled);
+        list.sort(Comparator.comparingInt(s -> s.id()));
+        return list;
+    }
+
+    int enrollment(String course) {
+        Set<Student> enrolled = byCourse.get(CourseNames.find(course));
+        return enrolled == null ? 0 : enrolled.size();
+    }
+
+    // Folded name, a separator that sorts before any character, then the ID
+    // as two chars so equal names stay in ID (= insertion) order
+    private static String sortKey(Student student) {
+        return key(student.name) + '\0' + (char) (student.id() >>> 16) + (char) student.id();
+    }
+
+    // ===== GRADES =====
+
+    void addGrade(Student student, String course, int grade) {
+        addGrade(student, course, grade, "");
+    }
+
+    // category may be empty; it's stored case-folded (see GradeCategories)
+    void addGrade(Student student, String course, int grade, String category) {
+        long start = RosterMetrics.start(RosterMetrics.Op.ADD_GRADE);
+        lock.readLock().lock();
+        try {
+            synchronized (student) {
+                boolean newCourse = student.grades(course) == null;
+                int categoryId = GradeCategories.intern(category);
+                student.openCourse(course).add(grade, categoryId);
+                // A student removed meanwhile stays out of the index
+                if (newCourse && byId.get(student.id()) == student) {
+                    enroll(student, CourseNames.find(course));
+                }
+                String categoryName = GradeCategories.name(categoryId);
+                for (RosterListener l : listeners) l.gradeAdded(student, course, grade, categoryName, newCourse);
+            }
+        } finally {
+            lock.readLock().unlock();
+            RosterMetrics.record(RosterMetrics.Op.ADD_GRADE, start);
+        }
+    }
+
+    // Puts a grade back at index (see RosterHistory)
+    void insertGrade(Student student, String course, int index, int grade, String category) {
+        lock.readLock().lock();
+        try {
+            synchronized (student) {
+                boolean newCourse = student.grades(course) == null;
+                int categoryId = GradeCategories.intern(category);
+                student.openCourse(course).insert(index, grade, categoryId);
+                if (newCourse && byId.get(student.id()) == student) {
+                    enroll(student, CourseNames.find(course));
+                }
+                String categoryName = GradeCategories.name(categoryId);
+                for (RosterListener l : listeners) {
+                    l.gradeInserted(student, course, index, grade, categoryName, newCourse);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Gives the student the course with no grades yet, if they don't have it
+    void openCourse(Student student, String course) {
+        openCourse(student, course, Integer.MAX_VALUE);
+    }
+
+    // Same, at `slot` of the student's courses (past the end: last)
+    void openCourse(Student student, String course, int slot) {
+        lock.readLock().lock();
+        try {
+            synchronized (student) {
+                if (student.grades(course) != null) return;
+                student.openCourse(course, slot);
+                if (byId.get(student.id()) == student) {
+                    enroll(student, CourseNames.find(course));
+                }
+                int at = student.courseSlot(course);
+                for (RosterListener l : listeners) l.courseAdded(student, course, at);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the grade that was replaced
+    int editGrade(Student student, String course, int index, int newGrade) {
+        lock.readLock().lock();
+        try {
+            synchronized (student) {
+                int oldGrade = gradesOf(student, course).set(index, newGrade);
+                for (RosterListener l : listeners) l.gradeEdited(student, course, index, oldGrade, newGrade);
+                return oldGrade;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the grade that was removed
+    int removeGrade(Student student, String course, int index) {
+        lock.readLock().lock();
+        try {
+            synchronized (student) {
+                GradeList grades = gradesOf(student, course);
+                String category = GradeCategories.name(grades.category(index));
+                int removed = grades.remove(index);
+                for (RosterListener l : listeners) l.gradeRemoved(student, course, index, removed, category);
+                return removed;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the removed grades, or null if the student didn't take it
+    GradeList removeCourse(Student student, String course) {
+        lock.readLock().lock();
+        try {
+            synchronized (student) {
+                int slot = student.courseSlot(course);
+                GradeList removed = student.removeCourse(course);
+                if (removed != null) {
+                    unenroll(student, CourseNames.find(course));
+                    for (RosterListener l : listeners) l.courseRemoved(student, course, slot, removed);
+                }
+                return removed;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static GradeList gradesOf(Student student, String course) {
+        GradeList grades = student.grades(course);
+        if (grades == null) {
+            throw new IllegalArgumentException(student.name + " has no grades in " + course);
+        }
+        return grades;
+    }
+
+    // The first ID from `from` on that this registry may hand out. Caller
+    // holds the write lock.
+    private int owned(int from) {
+        int past = Math.floorMod(from - 1 - shard, shards);
+        return past == 0 ? from : from + shards - past;
+    }
+
+    // Where a student with this ID goes in the list, which is always in ID
+    // order (IDs are handed out in insertion order). Caller holds the write lock.
+    private int placeOf(int id) {
+        int lo = 0;
+        int hi = students.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (students.get(mid).id() < id) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // ===== COURSE INDEX HELPERS =====
+
+    private void enroll(Student student, int courseId) {
+        byCourse.computeIfAbsent(courseId, id -> ConcurrentHashMap.newKeySet()).add(student);
+    }
+
+    private void unenroll(Student student, int courseId) {
+        Set<Student> enrolled = byCourse.get(courseId);
+        if (enrolled != null) enrolled.remove(student);
+    }
+
+    // ===== NAME INDEX HELPERS (caller holds the write lock) =====
+
+    private void indexName(Student student) {
+        String key = key(student.name);
+        Student current = byName.get(key);
+        if (current == null) {
+            byName.put(key, student);
+            return;
+        }
+        duplicateNames.merge(key, 1, Integer::sum);
+        // IDs grow with insertion order, so the smaller ID is the one
+        // a front-to-back scan would have found first.
+        if (student.id() < current.id()) {
+            byName.put(key, student);
+        }
+    }
+
+    private void unindexName(Student student) {
+        String key = key(student.name);
+        Integer dupes = duplicateNames.get(key);
+        if (dupes == null) {
+            byName.remove(key);
+            return;
+        }
+        if (dupes == 1) {
+            duplicateNames.remove(key);
+        } else {
+            duplicateNames.put(key, dupes - 1);
+        }
+        if (byName.get(key) == student) {
+            Student next = firstOtherWithKey(key, student);
+            if (next != null) {
+                byName.put(key, next);
+            } else {
+                byName.remove(key);
+            }
+        }
+    }
+
+    private Student firstOtherWithKey(String key, Student skip) {
+        for (Student s : students) {
+            if (s != skip && key(s.name).equals(key)) {
+                return s;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+// Records as tab-separated fields, one per line: how shards answer the
+// router (see ShardRouter), the statistics a shard sends (see
+// RosterAnalytics.writeSummary) and the event log (see RosterEvents.log).
+// Tabs, newlines and backslashes in a field are escaped.
+final class TabFields {
+
+    private TabFields() {
+    }
+
+    // The text as one field
+    static String field(String text) {
+        int i = 0;
+        while (i < text.length() && text.charAt(i) != '\t' && text.charAt(i) != '\n'
+                && text.charAt(i) != '\r' && text.charAt(i) != '\\') {
+            i++;
+        }
+        if (i == text.length()) return text;
+        StringBuilder out = new StringBuilder(text.length() + 8).append(text, 0, i);
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // Splits a line into its fields, undoing field()
+    static String[] fields(String line) {
+        String[] parts = line.split("\t", -1);
+        for (int p = 0; p < parts.length; p++) {
+            String part = parts[p];
+            if (part.indexOf('\\') < 0) continue;
+            StringBuilder out = new StringBuilder(part.length());
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                if (c == '\\' && i + 1 < part.length()) {
+                    char next = part.charAt(++i);
+                    out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+                } else {
+                    out.append(c);
+                }
+            }
+            parts[p] = out.toString();
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Random;
+
+// Microbenchmark: GradingScale table lookup vs the if-chain that
+// Student.convertToLetterGrade used to be. Also checks both agree on every
+// hundredth from -5 to 105 and on a million random averages.
+//
+//   mvn package
+//   java -cp GroupProject/bench/target/benchmarks.jar GradingScaleBench
+class GradingScaleBench {
+
+    private static final int AVERAGES = 1 << 20;
+    private static final int ROUNDS = 20;
+
+    // The old hard-coded chain, kept here as the baseline
+    static String chain(double average) {
+        if (average >= 90) return "A";
+        else if (average >= 80) return "B";
+        else if (average >= 70) return "C";
+        else if (average >= 60) return "D";
+        else return "F";
+    }
+
+    public static void main(String[] args) {
+        GradingScale scale = GradingScale.parse(GradingScale.DEFAULT_SPEC);
+        GradingScale plusMinus = GradingScale.parse(
+                "A+:97,A:93,A-:90,B+:87,B:83,B-:80,C+:77,C:73,C-:70,D+:67,D:63,D-:60,F:0");
+
+        // Averages the way GradeList makes them: sum / count of whole grades
+        Random random = new Random(42);
+        double[] averages = new double[AVERAGES];
+        for (int i = 0; i < AVERAGES; i++) {
+            int count = 1 + random.nextInt(20);
+            averages[i] = (count * 40 + random.nextInt(count * 60 + 1)) / (double) count;
+        }
+
+        for (int h = -500; h <= 10500; h++) {
+            check(scale, h / 100.0);
+        }
+        for (double average : averages) {
+            check(scale, average);
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean report = round >= ROUNDS - 3; // earlier rounds are warm-up
+            time("if-chain       ", report, () -> {
+                int sink = 0;
+                for (double a : averages) sink += chain(a).length();
+                return sink;
+            });
+            time("table (A-F)    ", report, () -> {
+                int sink = 0;
+                for (double a : averages) sink += scale.letter(a).length();
+                return sink;
+            });
+            time("table (+/-, 13)", report, () -> {
+                int sink = 0;
+                for (double a : averages) sink += plusMinus.letter(a).length();
+                return sink;
+            });
+        }
+    }
+
+    private static void check(GradingScale scale, double average) {
+        if (!chain(average).equals(scale.letter(average))) {
+            throw new AssertionError("Scale disagrees with the old chain at " + average);
+        }
+    }
+
+    interface Body {
+        int run();
+    }
+
+    private static int blackhole;
+
+    private static void time(String name, boolean report, Body body) {
+        long start = System.nanoTime();
+        blackhole += body.run();
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%s %6.2f ns/op%n", name, elapsed / (double) AVERAGES);
+        }
+    }
+}
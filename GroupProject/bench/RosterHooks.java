@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+// What the JMH benchmarks (package gradebench) run. JMH won't generate code
+// for benchmarks in the default package, and a named package can't see the
+// app's default-package classes, so the benchmarks reach these through
+// method handles (see gradebench.Hooks). Everything crosses as Object; the
+// real calls happen here with full types.
+public final class RosterHooks {
+
+    static final String[] COURSES = {"Math", "Science", "English", "History", "Computer Science"};
+    static final int COURSES_PER_STUDENT = 3;
+    static final int GRADES_PER_COURSE = 5;
+
+    private static final Student LETTERS = new Student("letters");
+
+    private RosterHooks() {
+    }
+
+    // A roster of `size` students with distinct names, each graded in a
+    // few courses. Same seed, same roster.
+    public static Object roster(int size) {
+        StudentRegistry registry = new StudentRegistry();
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            Student s = registry.add(name(i));
+            int first = random.nextInt(COURSES.length);
+            for (int c = 0; c < COURSES_PER_STUDENT; c++) {
+                String course = COURSES[(first + c) % COURSES.length];
+                for (int g = 0; g < GRADES_PER_COURSE; g++) {
+                    registry.addGrade(s, course, 40 + random.nextInt(61));
+                }
+            }
+        }
+        return registry;
+    }
+
+    // Name of the i-th student in roster(); spread out so prefixes vary
+    public static String name(int i) {
+        return "Student " + Integer.toString(i * 7919 % 1_000_003, 36) + " " + i;
+    }
+
+    public static Object student(Object registry, int index) {
+        List<Student> all = ((StudentRegistry) registry).all();
+        return all.get(index % all.size());
+    }
+
+    public static String course(Object student) {
+        return ((Student) student).courseName(0);
+    }
+
+    // ===== MEASURED =====
+
+    public static Object findByName(Object registry, String name) {
+        return ((StudentRegistry) registry).findByName(name);
+    }
+
+    // Adds a grade and takes it off again, so the roster is the same size
+    // after any number of calls
+    public static void addGradeAndUndo(Object student, String course, int grade) {
+        Student s = (Student) student;
+        synchronized (s) {
+            s.addGrade(course, grade);
+            GradeList grades = s.grades(course);
+            grades.remove(grades.size() - 1);
+        }
+    }
+
+    public static double calculateAverage(Object student, String course) {
+        return ((Student) student).calculateAverage(course);
+    }
+
+    public static String convertToLetterGrade(double average) {
+        return LETTERS.convertToLetterGrade(average);
+    }
+
+    // What Display All Students builds: the roster table, with every
+    // average and letter worked out. Returns the averages' sum.
+    public static double displayAll(Object registry) {
+        RosterTableModel table = new RosterTableModel((StudentRegistry) registry);
+        try {
+            double sum = 0;
+            for (int row = 0; row < table.getRowCount(); row++) {
+                Object average = table.getValueAt(row, RosterTableModel.AVERAGE);
+                if (average != null) sum += (Double) average;
+                table.getValueAt(row, RosterTableModel.LETTER);
+            }
+            return sum;
+        } finally {
+            table.detach();
+        }
+    }
+
+    // What the console's Display All Students prints, unfiltered and
+    // unpaged, into a Writer that drops it. Returns the number of rows.
+    public static int printTable(Object registry) throws IOException {
+        return RosterTable.print((StudentRegistry) registry, new RosterTable.Filter(), Writer.nullWriter(), 0, null);
+    }
+
+    // What Save to File does
+    public static void saveToFile(Object registry, Path target) throws IOException {
+        RosterExporter.export(((StudentRegistry) registry).all(), target, null);
+    }
+
+    // Reads students.txt back (what Load from File does with it). Returns
+    // the number of students.
+    public static int loadText(Path file) throws IOException {
+        return RosterLoader.readText(file).size();
+    }
+
+    // What Save Snapshot writes
+    public static void writeSnapshot(Object registry, Path target) throws IOException {
+        RosterSnapshot.write(((StudentRegistry) registry).all(), target);
+    }
+
+    // Reads a snapshot back (what startup does). Returns the number of
+    // students.
+    public static int readSnapshot(Path file) throws IOException {
+        return RosterSnapshot.read(file).students.size();
+    }
+}
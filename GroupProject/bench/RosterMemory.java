@@ -0,0 +1,103 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Heap used by the roster's grades: the original layout (a HashMap of
+// course name -> ArrayList<Integer> per student) against Student's interned
+// course IDs and byte-per-grade GradeLists. Builds `students` students with
+// `courses` courses of `grades` grades each in one layout, keeps them
+// reachable, and prints the heap growth after GC - per student and in all.
+//
+//   mvn package
+//   java -Xmx3g -cp GroupProject/bench/target/benchmarks.jar RosterMemory             1M x 6 x 20
+//   java -Xmx1g -cp GroupProject/bench/target/benchmarks.jar RosterMemory 200000 6 20
+class RosterMemory {
+
+    private static final String[] COURSES = {"Math", "Science", "English", "History", "Computer Science", "Art"};
+
+    // The layout before GradeList, as it was in GroupProject.java
+    static final class OldStudent {
+        final String name;
+        final Map<String, ArrayList<Integer>> courses = new HashMap<>();
+
+        OldStudent(String name) {
+            this.name = name;
+        }
+
+        void addGrade(String course, int grade) {
+            courses.putIfAbsent(course, new ArrayList<>());
+            courses.get(course).add(grade);
+        }
+    }
+
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int courses = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int grades = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        if (courses > COURSES.length) {
+            System.err.println("At most " + COURSES.length + " courses");
+            return;
+        }
+
+        System.out.printf("%d students x %d courses x %d grades%n", students, courses, grades);
+        report("HashMap<String, ArrayList<Integer>>", students, measure(() -> {
+            OldStudent[] roster = new OldStudent[students];
+            Random random = new Random(42);
+            for (int i = 0; i < students; i++) {
+                roster[i] = new OldStudent("Student " + i);
+                for (int c = 0; c < courses; c++) {
+                    // Course names came from the keyboard, so every student
+                    // had its own copy of each
+                    String course = new String(COURSES[c]);
+                    for (int g = 0; g < grades; g++) roster[i].addGrade(course, random.nextInt(101));
+                }
+            }
+            return roster;
+        }));
+        report("GradeList (byte per grade)", students, measure(() -> {
+            Student[] roster = new Student[students];
+            Random random = new Random(42);
+            for (int i = 0; i < students; i++) {
+                roster[i] = new Student("Student " + i);
+                for (int c = 0; c < courses; c++) {
+                    String course = new String(COURSES[c]);
+                    for (int g = 0; g < grades; g++) roster[i].addGrade(course, random.nextInt(101));
+                }
+            }
+            return roster;
+        }));
+    }
+
+    interface Builder {
+        Object build();
+    }
+
+    // Heap growth while what build() returns is still reachable
+    private static long measure(Builder builder) {
+        long before = usedAfterGc();
+        Object kept = builder.build();
+        long after = usedAfterGc();
+        if (kept.hashCode() == 42) System.out.print(""); // keeps `kept` alive up to here
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // A few rounds, until a collection stops freeing anything
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+
+    private static void report(String layout, int students, long bytes) {
+        System.out.printf("%-36s %8.0f bytes/student  %8.1f MB%n", layout, bytes / (double) students, bytes / 1e6);
+    }
+}
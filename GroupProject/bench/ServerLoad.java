@@ -0,0 +1,93 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Load test for server mode (see RosterServer): keeps `concurrency`
+// requests in flight until `requests` have been answered, then prints
+// throughput, latency percentiles and any non-2xx replies. Mix: one in
+// four adds a grade, the rest read an average or a student.
+//
+//   java -cp GroupProject/target/classes GroupProject server 8080 &
+//   java -cp GroupProject/bench/target/benchmarks.jar ServerLoad http://127.0.0.1:8080 200000 2000
+class ServerLoad {
+
+    private static final int STUDENTS = 1000;
+    private static final String[] COURSES = {"Math", "Science", "English", "History"};
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://127.0.0.1:" + RosterServer.DEFAULT_PORT;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // Students to work on, each with a grade in every course
+        List<CompletableFuture<HttpResponse<String>>> added = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            added.add(client.sendAsync(post(base + "/students", "name=Load+" + i),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        int[] ids = new int[STUDENTS];
+        List<CompletableFuture<?>> graded = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            ids[i] = Integer.parseInt(added.get(i).join().body().replaceAll("^\\{\"id\":(\\d+).*$", "$1"));
+            for (String course : COURSES) {
+                graded.add(client.sendAsync(post(base + "/students/" + ids[i] + "/grades",
+                        "course=" + course + "&grade=75"), HttpResponse.BodyHandlers.discarding()));
+            }
+        }
+        CompletableFuture.allOf(graded.toArray(new CompletableFuture<?>[0])).join();
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Random random = new Random(42);
+        CompletableFuture<?>[] all = new CompletableFuture<?>[requests];
+        long start = System.nanoTime();
+        for (int n = 0; n < requests; n++) {
+            int id = ids[random.nextInt(STUDENTS)];
+            String course = COURSES[random.nextInt(COURSES.length)];
+            int kind = random.nextInt(4);
+            HttpRequest request = kind == 0
+                    ? post(base + "/students/" + id + "/grades", "course=" + course + "&grade=" + random.nextInt(101))
+                    : kind == 1
+                    ? HttpRequest.newBuilder(URI.create(base + "/students/" + id)).build()
+                    : HttpRequest.newBuilder(URI.create(base + "/students/" + id + "/average?course=" + course)).build();
+
+            inFlight.acquire();
+            int slot = n;
+            long sent = System.nanoTime();
+            all[n] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[slot] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() / 100 != 2) failures.incrementAndGet();
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(all).handle((v, e) -> null).join();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests, %d in flight: %.0f req/s%n", requests, concurrency,
+                requests / (elapsed / 1e9));
+        System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.99)] / 1e6,
+                latencies[requests - 1] / 1e6);
+        System.out.println("failed: " + failures.get());
+    }
+
+    private static HttpRequest post(String url, String form) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+}
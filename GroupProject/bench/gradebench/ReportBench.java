@@ -0,0 +1,62 @@
+package gradebench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The whole-roster jobs: building the Display All Students table, printing
+// the console's version of it and the Save to File export. One call covers
+// every student.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportBench {
+
+    @Param({"1000", "100000", "1000000"})
+    public int students;
+
+    private Object registry;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        registry = Hooks.ROSTER.invokeExact(students);
+        target = Files.createTempFile("students", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public double displayAllStudents() throws Throwable {
+        return (double) Hooks.DISPLAY_ALL.invokeExact(registry);
+    }
+
+    @Benchmark
+    public int printConsoleTable() throws Throwable {
+        return (int) Hooks.PRINT_TABLE.invokeExact(registry);
+    }
+
+    @Benchmark
+    public void saveToFile() throws Throwable {
+        Hooks.SAVE_TO_FILE.invokeExact(registry, target);
+    }
+}
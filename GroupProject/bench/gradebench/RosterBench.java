@@ -0,0 +1,77 @@
+package gradebench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The per-student operations: name lookup, adding a grade, a course
+// average and its letter. Each call picks the next of LOOKUPS students so
+// the lookups don't all hit the same cache lines.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RosterBench {
+
+    private static final int LOOKUPS = 1024; // power of two
+
+    @Param({"1000", "100000", "1000000"})
+    public int students;
+
+    private Object registry;
+    private final String[] names = new String[LOOKUPS];
+    private final Object[] picked = new Object[LOOKUPS];
+    private final String[] courses = new String[LOOKUPS];
+    private final double[] averages = new double[LOOKUPS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        registry = Hooks.ROSTER.invokeExact(students);
+        for (int i = 0; i < LOOKUPS; i++) {
+            int index = (int) ((long) i * students / LOOKUPS);
+            names[i] = (String) Hooks.NAME.invokeExact(index);
+            picked[i] = Hooks.STUDENT.invokeExact(registry, index);
+            courses[i] = (String) Hooks.COURSE.invokeExact(picked[i]);
+            averages[i] = (double) Hooks.CALCULATE_AVERAGE.invokeExact(picked[i], courses[i]);
+        }
+    }
+
+    private int next() {
+        return next = (next + 1) & (LOOKUPS - 1);
+    }
+
+    @Benchmark
+    public Object findStudentByName() throws Throwable {
+        return Hooks.FIND_BY_NAME.invokeExact(registry, names[next()]);
+    }
+
+    @Benchmark
+    public void addGrade() throws Throwable {
+        int i = next();
+        Hooks.ADD_GRADE_AND_UNDO.invokeExact(picked[i], courses[i], 85);
+    }
+
+    @Benchmark
+    public double calculateAverage() throws Throwable {
+        int i = next();
+        return (double) Hooks.CALCULATE_AVERAGE.invokeExact(picked[i], courses[i]);
+    }
+
+    @Benchmark
+    public String convertToLetterGrade() throws Throwable {
+        return (String) Hooks.CONVERT_TO_LETTER_GRADE.invokeExact(averages[next()]);
+    }
+}
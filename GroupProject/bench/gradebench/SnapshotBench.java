@@ -0,0 +1,75 @@
+package gradebench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The binary snapshot (students.roster) against the text format it
+// replaced for saving and loading: writing and reading back the same
+// roster both ways. The read benchmarks parse files written in setUp.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotBench {
+
+    @Param({"1000", "100000", "1000000"})
+    public int students;
+
+    private Object registry;
+    private Path text;
+    private Path snapshot;
+    private Path scratch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        registry = Hooks.ROSTER.invokeExact(students);
+        text = Files.createTempFile("students", ".txt");
+        snapshot = Files.createTempFile("students", ".roster");
+        scratch = Files.createTempFile("scratch", ".out");
+        Hooks.SAVE_TO_FILE.invokeExact(registry, text);
+        Hooks.WRITE_SNAPSHOT.invokeExact(registry, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(scratch);
+    }
+
+    @Benchmark
+    public void writeText() throws Throwable {
+        Hooks.SAVE_TO_FILE.invokeExact(registry, scratch);
+    }
+
+    @Benchmark
+    public void writeSnapshot() throws Throwable {
+        Hooks.WRITE_SNAPSHOT.invokeExact(registry, scratch);
+    }
+
+    @Benchmark
+    public int readText() throws Throwable {
+        return (int) Hooks.LOAD_TEXT.invokeExact(text);
+    }
+
+    @Benchmark
+    public int readSnapshot() throws Throwable {
+        return (int) Hooks.READ_SNAPSHOT.invokeExact(snapshot);
+    }
+}
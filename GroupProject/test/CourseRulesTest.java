@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Weighted averages and GPAs come from GradeList's running per-category
+// sums; here they're checked against working them out from every grade.
+class CourseRulesTest {
+
+    private static final String WEIGHTED = "Mechanics";
+    private static final String PLAIN = "Poetry";
+    private static final String[] COURSES = {WEIGHTED, PLAIN};
+    // "quiz" has no weight in WEIGHTED, so its grades don't count there
+    private static final String[] CATEGORIES = {"homework", "exam", "project", "quiz", ""};
+    private static final Map<String, Double> WEIGHTS = Map.of("homework", 30.0, "exam", 50.0, "project", 20.0);
+    private static final Map<String, Double> CREDITS = Map.of(WEIGHTED, 4.0, PLAIN, 3.0);
+
+    @BeforeEach
+    void configure() {
+        CourseRules.configure(Map.of(WEIGHTED, "homework:30,exam:50,project:20"),
+                Map.of(WEIGHTED, "4", PLAIN, "3"), null);
+    }
+
+    @AfterEach
+    void reset() {
+        CourseRules.configure(Map.of(), Map.of(), null);
+    }
+
+    @Test
+    void weightedAverageUsesOnlyWeightedCategoriesWithGrades() {
+        StudentRegistry registry = new StudentRegistry();
+        Student s = registry.add("Ann");
+        registry.addGrade(s, WEIGHTED, 60, "quiz");
+        // Nothing weighted yet: the plain mean
+        assertEquals(60.0, CourseRules.average(WEIGHTED, s.grades(WEIGHTED)), 1e-9);
+
+        registry.addGrade(s, WEIGHTED, 80, "homework");
+        registry.addGrade(s, WEIGHTED, 100, "homework");
+        registry.addGrade(s, WEIGHTED, 70, "exam");
+        // (30 x 90 + 50 x 70) / 80; project has no grades, quiz no weight
+        assertEquals(77.5, CourseRules.average(WEIGHTED, s.grades(WEIGHTED)), 1e-9);
+    }
+
+    @Test
+    void weightedAverageAndGpaMatchBruteForce() {
+        Random random = new Random(16);
+        StudentRegistry registry = new StudentRegistry();
+        Map<Student, Map<String, List<int[]>>> model = new HashMap<>(); // {grade, category index}
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Student s = registry.add("Student " + i);
+            students.add(s);
+            model.put(s, new HashMap<>());
+        }
+
+        for (int op = 0; op < 10_000; op++) {
+            Student s = students.get(random.nextInt(students.size()));
+            String course = COURSES[random.nextInt(COURSES.length)];
+            List<int[]> grades = model.get(s).computeIfAbsent(course, c -> new ArrayList<>());
+            int pick = random.nextInt(100);
+            if (pick < 50 || grades.isEmpty()) {
+                int category = random.nextInt(CATEGORIES.length);
+                int grade = random.nextInt(101);
+                registry.addGrade(s, course, grade, CATEGORIES[category]);
+                grades.add(new int[] {grade, category});
+            } else if (pick < 65) {
+                int category = random.nextInt(CATEGORIES.length);
+                int grade = random.nextInt(101);
+                int index = random.nextInt(grades.size() + 1);
+                registry.insertGrade(s, course, index, grade, CATEGORIES[category]);
+                grades.add(index, new int[] {grade, category});
+            } else if (pick < 80) {
+                int index = random.nextInt(grades.size());
+                int grade = random.nextInt(101);
+                registry.editGrade(s, course, index, grade);
+                grades.get(index)[0] = grade;
+            } else if (pick < 97) {
+                int index = random.nextInt(grades.size());
+                registry.removeGrade(s, course, index);
+                grades.remove(index);
+            } else {
+                registry.removeCourse(s, course);
+                model.get(s).remove(course);
+            }
+        }
+
+        for (Student s : students) {
+            double points = 0;
+            double hours = 0;
+            for (Map.Entry<String, List<int[]>> e : model.get(s).entrySet()) {
+                String course = e.getKey();
+                List<int[]> grades = e.getValue();
+                GradeList actual = s.grades(course);
+                assertEquals(grades.size(), actual.size(), s.name + " / " + course);
+                if (grades.isEmpty()) continue;
+
+                double expected = bruteForceAverage(course, grades);
+                assertEquals(expected, CourseRules.average(course, actual), 1e-9, s.name + " / " + course);
+
+                String letter = GradingScale.forCourse(course).letter(expected);
+                points += CourseRules.points(letter) * CREDITS.get(course);
+                hours += CREDITS.get(course);
+            }
+            if (hours == 0) {
+                assertTrue(Double.isNaN(s.gpa()), s.name);
+            } else {
+                assertEquals(points / hours, s.gpa(), 1e-9, s.name);
+                assertEquals(hours, s.gpaHours(), 1e-9, s.name);
+            }
+        }
+    }
+
+    private static double bruteForceAverage(String course, List<int[]> grades) {
+        if (course.equals(WEIGHTED)) {
+            double weighted = 0;
+            double total = 0;
+            for (Map.Entry<String, Double> w : WEIGHTS.entrySet()) {
+                long sum = 0;
+                int count = 0;
+                for (int[] g : grades) {
+                    if (CATEGORIES[g[1]].equals(w.getKey())) {
+                        sum += g[0];
+                        count++;
+                    }
+                }
+                if (count == 0) continue;
+                weighted += w.getValue() * sum / count;
+                total += w.getValue();
+            }
+            if (total > 0) return weighted / total;
+        }
+        long sum = 0;
+        for (int[] g : grades) sum += g[0];
+        return sum / (double) grades.size();
+    }
+}
@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GradeStoreTest {
+
+    @TempDir
+    Path dir;
+
+    // Every session replaces the whole roster: grades that grow, are
+    // inserted and removed in the middle, renames, removed courses and
+    // students. Once the files hold two sessions' worth, space freed in
+    // one must be reused after the next open instead of growing them (give
+    // or take a little for the free runs not lining up).
+    @Test
+    void spaceFreedInOneSessionIsReusedInTheNext() throws IOException {
+        Random random = new Random(24);
+        long[] grown = null;
+        for (int session = 0; session < 12; session++) {
+            StudentRegistry registry = new StudentRegistry();
+            GradeStore store = GradeStore.open(registry, dir);
+            for (Student s : new ArrayList<>(registry.all())) registry.remove(s);
+
+            List<Student> students = new ArrayList<>();
+            for (int i = 0; i < 200; i++) students.add(registry.add("Student " + i));
+            for (int op = 0; op < 4_000; op++) {
+                Student s = students.get(random.nextInt(students.size()));
+                String course = "Course " + random.nextInt(4);
+                GradeList grades = s.grades(course);
+                int pick = random.nextInt(100);
+                if (pick < 60 || grades == null || grades.isEmpty()) {
+                    registry.addGrade(s, course, random.nextInt(101));
+                } else if (pick < 75) {
+                    registry.insertGrade(s, course, random.nextInt(grades.size() + 1), random.nextInt(101), "");
+                } else if (pick < 90) {
+                    registry.removeGrade(s, course, random.nextInt(grades.size()));
+                } else if (pick < 95) {
+                    registry.rename(s, s.name + " Jr");
+                } else {
+                    registry.removeCourse(s, course);
+                }
+            }
+            store.close();
+
+            long[] tops = {top(GradeStore.GRADES_FILE), top(GradeStore.NAMES_FILE)};
+            if (session == 2) grown = tops;
+            if (session > 2) {
+                assertNotNull(grown);
+                assertTrue(tops[0] <= grown[0] * 11 / 10, "grades after session " + session);
+                assertTrue(tops[1] <= grown[1] * 11 / 10, "names after session " + session);
+            }
+        }
+    }
+
+    // Where the next run would go in a fresh part of the file
+    private long top(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(file))) {
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            return header.getLong(8);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void recordsTheWholeRangeOfLong() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1L << 40);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot s = histogram.snapshot();
+        assertEquals(3, s.count);
+        assertEquals(Long.MAX_VALUE, s.max);
+        assertEquals(Long.MAX_VALUE, s.p999);
+    }
+
+    @Test
+    void everyValueFallsInABucketThatHoldsIt() {
+        for (int bit = 0; bit < 63; bit++) {
+            for (long value : new long[] {(1L << bit) - 1, 1L << bit, (1L << bit) + 1, Long.MAX_VALUE >>> bit}) {
+                int bucket = LatencyHistogram.bucket(value);
+                assertTrue(LatencyHistogram.highestIn(bucket) >= value, value + " in bucket " + bucket);
+                assertTrue(bucket == 0 || LatencyHistogram.highestIn(bucket - 1) < value,
+                        value + " in bucket " + bucket);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// The statistics RosterAnalytics keeps up to date change by change must be
+// the ones a fresh full pass over the roster gives.
+class RosterAnalyticsTest {
+
+    private static final String[] COURSES = {"Algebra", "Chemistry", "Drama", "Geography"};
+    private static final int SHOWN = 10;
+
+    @Test
+    void incrementalStatisticsMatchAFullPass() {
+        Random random = new Random(13);
+        StudentRegistry registry = new StudentRegistry();
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Student s = registry.add("Student " + i);
+            students.add(s);
+            for (int g = random.nextInt(8); g > 0; g--) {
+                registry.addGrade(s, COURSES[random.nextInt(COURSES.length)], random.nextInt(101));
+            }
+        }
+
+        RosterAnalytics live = RosterAnalytics.attach(registry);
+        assertSameAsFullPass(live, registry);
+        for (int op = 0; op < 5_000; op++) {
+            change(registry, students, random);
+            if (op % 250 == 0) {
+                // Ask for rankings so the cached ones get invalidated later
+                live.topOverall(SHOWN);
+                live.topGpa(SHOWN);
+                for (String course : COURSES) live.top(course, SHOWN);
+            }
+            if (op % 500 == 499) assertSameAsFullPass(live, registry);
+        }
+        live.detach();
+    }
+
+    @Test
+    void gpaRankingFollowsCreditChanges() {
+        StudentRegistry registry = new StudentRegistry();
+        Student ann = registry.add("Ann");
+        Student bob = registry.add("Bob");
+        registry.addGrade(ann, "Algebra", 95);
+        registry.addGrade(ann, "Drama", 55);
+        registry.addGrade(bob, "Algebra", 55);
+        registry.addGrade(bob, "Drama", 95);
+        RosterAnalytics live = RosterAnalytics.attach(registry);
+        try {
+            // Equal GPAs: ID order
+            assertEquals(List.of("1 2.0", "2 2.0"), text(live.topGpa(SHOWN)));
+
+            CourseRules.configure(Map.of(), Map.of("Drama", "3"), null);
+            assertEquals(List.of("2 3.0", "1 1.0"), text(live.topGpa(SHOWN)));
+
+            registry.addGrade(ann, "Drama", 100);
+            assertEquals(List.of("2 3.0", "1 2.5"), text(live.topGpa(SHOWN)));
+        } finally {
+            CourseRules.configure(Map.of(), Map.of(), null);
+            live.detach();
+        }
+    }
+
+    // One random roster change through the registry
+    private static void change(StudentRegistry registry, List<Student> students, Random random) {
+        Student s = students.get(random.nextInt(students.size()));
+        String course = COURSES[random.nextInt(COURSES.length)];
+        GradeList grades = s.grades(course);
+        int pick = random.nextInt(100);
+        if (pick < 50) {
+            registry.addGrade(s, course, random.nextInt(101));
+        } else if (pick < 65 && grades != null && !grades.isEmpty()) {
+            registry.editGrade(s, course, random.nextInt(grades.size()), random.nextInt(101));
+        } else if (pick < 80 && grades != null && !grades.isEmpty()) {
+            registry.removeGrade(s, course, random.nextInt(grades.size()));
+        } else if (pick < 85) {
+            registry.removeCourse(s, course);
+        } else if (pick < 90) {
+            registry.rename(s, s.name + "'");
+        } else if (pick < 95) {
+            registry.remove(s);
+            students.remove(s);
+            students.add(registry.add("New " + random.nextInt(1_000_000)));
+        } else {
+            registry.openCourse(s, course);
+        }
+    }
+
+    private static void assertSameAsFullPass(RosterAnalytics live, StudentRegistry registry) {
+        RosterAnalytics full = RosterAnalytics.attach(registry);
+        try {
+            assertEquals(full.courses(), live.courses());
+            for (String course : full.courses()) {
+                RosterAnalytics.CourseReport want = full.report(course);
+                RosterAnalytics.CourseReport got = live.report(course);
+                assertNotNull(got, course);
+                assertEquals(want.students, got.students, course);
+                assertEquals(want.mean, got.mean, 1e-9, course);
+                assertEquals(want.stdDev, got.stdDev, 1e-6, course);
+                assertEquals(want.median, got.median, course);
+                assertEquals(want.p90, got.p90, course);
+                assertEquals(want.letters, got.letters, course);
+                assertSameRanking(full.top(course, SHOWN), live.top(course, SHOWN), course);
+            }
+            assertSameRanking(full.topOverall(SHOWN), live.topOverall(SHOWN), "overall");
+            assertSameRanking(full.topGpa(SHOWN), live.topGpa(SHOWN), "GPA");
+        } finally {
+            full.detach();
+        }
+    }
+
+    private static void assertSameRanking(List<RosterAnalytics.Ranked> want, List<RosterAnalytics.Ranked> got,
+                                          String what) {
+        assertEquals(text(want), text(got), what);
+    }
+
+    private static List<String> text(List<RosterAnalytics.Ranked> ranked) {
+        List<String> text = new ArrayList<>();
+        for (RosterAnalytics.Ranked r : ranked) text.add(r.student.id() + " " + r.average);
+        return text;
+    }
+}
@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RosterHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void undoingACourseRemovalPutsItBackInItsPlace() throws Exception {
+        StudentRegistry registry = new StudentRegistry();
+        RosterJournal journal = RosterJournal.open(registry, dir.resolve("students.roster"),
+                dir.resolve("students.journal"));
+        RosterHistory history = RosterHistory.attach(registry);
+        Student ann = registry.add("Ann");
+        registry.addGrade(ann, "Botany", 70, "exam");
+        registry.addGrade(ann, "Cooking", 80);
+        registry.addGrade(ann, "Cooking", 85, "homework");
+        registry.addGrade(ann, "Dance", 90);
+
+        registry.removeCourse(ann, "Cooking");
+        assertArrayEquals(new String[] {"Botany", "Dance"}, ann.courseNames());
+        assertEquals("delete Cooking for Ann", history.undo());
+        assertArrayEquals(new String[] {"Botany", "Cooking", "Dance"}, ann.courseNames());
+        assertEquals("80, 85", ann.grades("Cooking").toString());
+        assertEquals("homework", GradeCategories.name(ann.grades("Cooking").category(1)));
+        assertEquals(1, registry.enrollment("Cooking"));
+
+        assertEquals("delete Cooking for Ann", history.redo());
+        assertArrayEquals(new String[] {"Botany", "Dance"}, ann.courseNames());
+        history.undo();
+        history.detach();
+        journal.close();
+
+        // The journal puts it back in the same place
+        StudentRegistry replayed = new StudentRegistry();
+        RosterJournal.open(replayed, dir.resolve("students.roster"), dir.resolve("students.journal")).close();
+        Student again = replayed.findByName("Ann");
+        assertArrayEquals(new String[] {"Botany", "Cooking", "Dance"}, again.courseNames());
+        assertEquals("80, 85", again.grades("Cooking").toString());
+    }
+
+    @Test
+    void theGradeStoreKeepsARestoredCourseInItsPlace() throws Exception {
+        StudentRegistry registry = new StudentRegistry();
+        GradeStore store = GradeStore.open(registry, dir.resolve("students.grades"));
+        RosterHistory history = RosterHistory.attach(registry);
+        Student ann = registry.add("Ann");
+        for (String course : new String[] {"Botany", "Cooking", "Dance", "Etching"}) {
+            registry.addGrade(ann, course, 75);
+        }
+        registry.removeCourse(ann, "Botany");
+        history.undo();
+        history.detach();
+        store.close();
+
+        StudentRegistry reopened = new StudentRegistry();
+        GradeStore.open(reopened, dir.resolve("students.grades")).close();
+        assertArrayEquals(new String[] {"Botany", "Cooking", "Dance", "Etching"},
+                reopened.findByName("Ann").courseNames());
+    }
+
+    @Test
+    void keepsNoMoreThanTheCommandLimit() {
+        StudentRegistry registry = new StudentRegistry();
+        RosterHistory history = RosterHistory.attach(registry);
+        Student ann = registry.add("Ann");
+        registry.addGrade(ann, "Botany", 50);
+
+        // One step just under the limit pushes the older steps out
+        history.begin("import");
+        for (int i = 1; i < RosterHistory.COMMAND_LIMIT; i++) registry.addGrade(ann, "Botany", 60);
+        history.end();
+        assertEquals("import", history.undo());
+        assertEquals(1, ann.grades("Botany").size());
+        assertEquals("add 50 to Ann in Botany", history.undo());
+        assertNull(ann.grades("Botany"));
+        history.redo();
+        history.redo();
+
+        // One step past the limit can't be undone, nor anything before it
+        history.begin("bigger import");
+        for (int i = 0; i <= RosterHistory.COMMAND_LIMIT; i++) registry.addGrade(ann, "Botany", 70);
+        history.end();
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+
+        // Later changes are recorded as usual
+        registry.addGrade(ann, "Botany", 80);
+        assertTrue(history.canUndo());
+        assertEquals("add 80 to Ann in Botany", history.undo());
+        assertFalse(history.canUndo());
+        history.detach();
+    }
+}
@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// End to end: a router with SHARDS worker JVMs and a single RosterServer,
+// each a real process in its own empty directory, get the same students
+// and grades over HTTP. Every listing, table, report and average must then
+// read the same from both.
+class ShardRouterTest {
+
+    private static final int SHARDS = 3;
+    private static final String[] COURSES = {"Math", "Physics", "History", "Art"};
+    private static final String[] CATEGORIES = {"", "homework", "exam"};
+    private static final Pattern SERVING = Pattern.compile("on http://127\\.0\\.0\\.1:(\\d+)/students");
+
+    @TempDir
+    Path dir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<Process> processes = new ArrayList<>();
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        // The router stops its shards from its shutdown hook
+        for (Process p : processes) p.destroy();
+        for (Process p : processes) {
+            if (!p.waitFor(20, TimeUnit.SECONDS)) p.destroyForcibly();
+        }
+    }
+
+    @Test
+    void routerAnswersLikeASingleServer() throws Exception {
+        URI single = start("single", "server", "0");
+        int port = freePorts(SHARDS + 1);
+        URI router = start("router", "router", String.valueOf(port), String.valueOf(SHARDS));
+
+        // The same workload, request by request, against both
+        Random random = new Random(23);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            String name = i % 10 == 9 ? names.get(i - 5) : (i % 2 == 0 ? "Student " : "student ") + i;
+            names.add(name);
+            assertSame(single, router, post("/students", "name", name));
+        }
+        List<String> graded = new ArrayList<>();
+        for (int g = 0; g < 400; g++) {
+            int id = 1 + random.nextInt(names.size());
+            String course = COURSES[random.nextInt(COURSES.length)];
+            String path = "/students/" + id + "/grades";
+            assertSame(single, router, post(path, "course", course,
+                    "grade", String.valueOf(random.nextInt(101)),
+                    "category", CATEGORIES[random.nextInt(CATEGORIES.length)]));
+            graded.add("/students/" + id + "/average?course=" + course);
+        }
+
+        for (String path : new String[] {
+                "/table", "/table?course=Math", "/table?letter=B", "/table?name=stu", "/statistics",
+                "/students?limit=1000", "/students?prefix=Student%202&limit=7", "/students?limit=3"}) {
+            assertSame(single, router, get(path));
+        }
+        for (int id = 1; id <= names.size(); id++) assertSame(single, router, get("/students/" + id));
+        for (String path : graded) assertSame(single, router, get(path));
+    }
+
+    // ===== HELPERS =====
+
+    private interface Request {
+        HttpRequest to(URI base);
+    }
+
+    private void assertSame(URI single, URI router, Request request) throws Exception {
+        HttpResponse<String> want = client.send(request.to(single), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> got = client.send(request.to(router), HttpResponse.BodyHandlers.ofString());
+        String what = request.to(single).method() + " " + request.to(single).uri().getRawPath();
+        assertEquals(want.statusCode(), got.statusCode(), what);
+        assertEquals(want.body(), got.body(), what);
+        assertTrue(want.statusCode() < 400, what + ": " + want.body());
+    }
+
+    private static Request get(String path) {
+        return base -> HttpRequest.newBuilder(base.resolve(path)).GET().build();
+    }
+
+    private static Request post(String path, String... params) {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < params.length; i += 2) {
+            if (form.length() > 0) form.append('&');
+            form.append(params[i]).append('=').append(URLEncoder.encode(params[i + 1], StandardCharsets.UTF_8));
+        }
+        return base -> HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form.toString()))
+                .build();
+    }
+
+    // Runs GroupProject with `args` in a fresh directory and waits for the
+    // line that says where it's serving
+    private URI start(String name, String... args) throws Exception {
+        Path work = Files.createDirectory(dir.resolve(name));
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(Paths.get(GroupProject.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toString());
+        command.add("GroupProject");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(work.toFile()).redirectErrorStream(true).start();
+        processes.add(process);
+
+        CompletableFuture<Integer> port = new CompletableFuture<>();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    Matcher m = SERVING.matcher(line);
+                    if (m.find()) port.complete(Integer.parseInt(m.group(1)));
+                }
+            } catch (IOException e) {
+                // the process is gone
+            }
+            port.completeExceptionally(new IOException(name + " exited without serving"));
+        });
+        reader.setDaemon(true);
+        reader.start();
+        return URI.create("http://127.0.0.1:" + port.get(90, TimeUnit.SECONDS));
+    }
+
+    // The first of `count` consecutive ports that are free right now (the
+    // router puts its shards on the ports after its own)
+    private static int freePorts(int count) throws IOException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            int first;
+            try (ServerSocket probe = new ServerSocket(0)) {
+                first = probe.getLocalPort();
+            }
+            if (first + count > 65535) continue;
+            List<ServerSocket> held = new ArrayList<>();
+            try {
+                for (int i = 0; i < count; i++) held.add(new ServerSocket(first + i));
+                return first;
+            } catch (IOException e) {
+                // one of them is taken: try elsewhere
+            } finally {
+                for (ServerSocket s : held) s.close();
+            }
+        }
+        throw new IOException("No " + count + " free ports in a row");
+    }
+}
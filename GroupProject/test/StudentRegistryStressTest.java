@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+// Many threads adding grades through StudentRegistry at once, to a few
+// students they all share and to students only they touch (registered
+// while the others are grading). Afterwards every grade list, index and
+// listener count must add up to what the threads did.
+class StudentRegistryStressTest {
+
+    private static final int THREADS = 8;
+    private static final int OPS = 20_000;
+    private static final int SHARED = 4;
+    private static final int OWN = 25; // per thread
+    private static final String[] COURSES = {"Math", "Physics", "History", "Art", "Biology"};
+
+    // What one student got, from the threads' side or the listener's
+    private static final class Tally {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong newCourses = new AtomicLong();
+    }
+
+    // (student, course) -> tally
+    private static final class Tallies {
+        final Map<Student, Map<String, Tally>> byStudent = new ConcurrentHashMap<>();
+
+        Tally of(Student student, String course) {
+            return byStudent.computeIfAbsent(student, s -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(course, c -> new Tally());
+        }
+    }
+
+    @Test
+    void concurrentAddGradeKeepsListsIndexesAndListenersInStep() throws Exception {
+        StudentRegistry registry = new StudentRegistry();
+        Tallies heard = new Tallies();
+        registry.addListener(new RosterListener() {
+            @Override
+            public void gradeAdded(Student student, String course, int grade, String category, boolean newCourse) {
+                Tally t = heard.of(student, course);
+                t.count.incrementAndGet();
+                t.sum.addAndGet(grade);
+                if (newCourse) t.newCourses.incrementAndGet();
+            }
+        });
+
+        List<Student> shared = new ArrayList<>();
+        for (int i = 0; i < SHARED; i++) shared.add(registry.add("Shared " + i));
+
+        Tallies done = new Tallies();
+        List<List<Student>> own = new ArrayList<>();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                List<Student> mine = new ArrayList<>();
+                own.add(mine);
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    go.await();
+                    Random random = new Random(thread);
+                    for (int op = 0; op < OPS; op++) {
+                        // Registers its own students as it goes, so the write
+                        // lock is taken while the others hold the read lock
+                        if (op % (OPS / OWN) == 0) mine.add(registry.add("Thread " + thread + " student " + mine.size()));
+                        Student student = random.nextBoolean()
+                                ? shared.get(random.nextInt(SHARED))
+                                : mine.get(random.nextInt(mine.size()));
+                        String course = COURSES[random.nextInt(COURSES.length)];
+                        int grade = random.nextInt(101);
+                        registry.addGrade(student, course, grade);
+                        Tally tally = done.of(student, course);
+                        tally.count.incrementAndGet();
+                        tally.sum.addAndGet(grade);
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Student> everyone = new ArrayList<>(shared);
+        for (List<Student> mine : own) everyone.addAll(mine);
+        assertEquals(SHARED + THREADS * OWN, registry.size());
+        assertEquals(new HashSet<>(everyone), new HashSet<>(registry.all()));
+
+        Map<String, Set<Student>> takers = new HashMap<>();
+        for (String course : COURSES) takers.put(course, new HashSet<>());
+        for (Student student : everyone) {
+            assertSame(student, registry.findByName(student.name), student.name);
+            assertSame(student, registry.findById(student.id()), student.name);
+            Map<String, Tally> expected = done.byStudent.getOrDefault(student, Map.of());
+            assertEquals(expected.size(), student.courseCount(), student.name);
+            for (Map.Entry<String, Tally> e : expected.entrySet()) {
+                String what = student.name + " / " + e.getKey();
+                GradeList grades = student.grades(e.getKey());
+                assertNotNull(grades, what);
+                assertEquals(e.getValue().count.get(), grades.size(), what);
+                assertEquals(e.getValue().sum.get(), grades.sum(), what);
+
+                Tally seen = heard.of(student, e.getKey());
+                assertEquals(e.getValue().count.get(), seen.count.get(), what);
+                assertEquals(e.getValue().sum.get(), seen.sum.get(), what);
+                assertEquals(1, seen.newCourses.get(), what);
+                takers.get(e.getKey()).add(student);
+            }
+        }
+        for (String course : COURSES) {
+            assertEquals(takers.get(course), new HashSet<>(registry.studentsIn(course)), course);
+            assertEquals(takers.get(course).size(), registry.enrollment(course), course);
+        }
+    }
+}
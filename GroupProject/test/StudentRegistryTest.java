@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class StudentRegistryTest {
+
+    private static final String[] COURSES = {"Ceramics", "Economics", "Latin", "Statistics"};
+
+    // ===== COURSE INDEX =====
+
+    @Test
+    void courseIndexFollowsGradesCoursesAndStudents() {
+        StudentRegistry registry = new StudentRegistry();
+        Student ann = registry.add("Ann");
+        Student bob = registry.add("Bob");
+
+        registry.addGrade(ann, "Ceramics", 90);
+        registry.addGrade(bob, "Ceramics", 70);
+        registry.addGrade(bob, "Latin", 60);
+        assertEquals(List.of(ann, bob), registry.studentsIn("Ceramics"));
+        assertEquals(List.of(bob), registry.studentsIn("Latin"));
+
+        // A course with no grades left is still taken
+        registry.removeGrade(bob, "Latin", 0);
+        assertEquals(List.of(bob), registry.studentsIn("Latin"));
+
+        registry.removeCourse(bob, "Ceramics");
+        assertEquals(List.of(ann), registry.studentsIn("Ceramics"));
+        assertEquals(1, registry.enrollment("Ceramics"));
+
+        registry.remove(ann);
+        assertTrue(registry.studentsIn("Ceramics").isEmpty());
+        assertEquals(0, registry.enrollment("Ceramics"));
+
+        // Grades given to a removed student don't put them back
+        registry.addGrade(ann, "Statistics", 50);
+        assertTrue(registry.studentsIn("Statistics").isEmpty());
+
+        registry.clear();
+        assertTrue(registry.studentsIn("Latin").isEmpty());
+    }
+
+    @Test
+    void courseIndexMatchesAScanAfterRandomChanges() {
+        Random random = new Random(14);
+        StudentRegistry registry = new StudentRegistry();
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 50; i++) students.add(registry.add("Student " + i));
+
+        for (int op = 0; op < 5_000; op++) {
+            Student s = students.get(random.nextInt(students.size()));
+            String course = COURSES[random.nextInt(COURSES.length)];
+            GradeList grades = s.grades(course);
+            int pick = random.nextInt(100);
+            if (pick < 45) {
+                registry.addGrade(s, course, random.nextInt(101));
+            } else if (pick < 60 && grades != null && !grades.isEmpty()) {
+                registry.removeGrade(s, course, random.nextInt(grades.size()));
+            } else if (pick < 70 && grades != null && !grades.isEmpty()) {
+                registry.insertGrade(s, course, random.nextInt(grades.size() + 1), random.nextInt(101), "");
+            } else if (pick < 85) {
+                registry.removeCourse(s, course);
+            } else if (pick < 90) {
+                registry.openCourse(s, course);
+            } else if (pick < 95) {
+                registry.rename(s, "Renamed " + op);
+            } else {
+                registry.remove(s);
+                students.remove(s);
+                students.add(registry.add("Student " + (50 + op)));
+            }
+            if (op % 100 == 99) assertIndexMatchesScan(registry);
+        }
+    }
+
+    private static void assertIndexMatchesScan(StudentRegistry registry) {
+        for (String course : COURSES) {
+            Set<Student> taking = new HashSet<>();
+            for (Student s : registry.all()) {
+                if (s.grades(course) != null) taking.add(s);
+            }
+            List<Student> indexed = registry.studentsIn(course);
+            assertEquals(taking, new HashSet<>(indexed), course);
+            assertEquals(taking.size(), indexed.size(), course);
+            assertEquals(taking.size(), registry.enrollment(course), course);
+            for (int i = 1; i < indexed.size(); i++) {
+                assertTrue(indexed.get(i - 1).id() < indexed.get(i).id(), course + " in ID order");
+            }
+        }
+    }
+}